@@ -0,0 +1,129 @@
+/**
+ * @file AssetCache.java
+ * @description Loads the images and fonts in the data directory once and
+ *   shares them, along with resized copies, between all UI components.
+ */
+
+package quickshow;
+
+import java.util.HashMap;
+
+import processing.core.PApplet;
+import processing.core.PFont;
+import processing.core.PImage;
+
+public class AssetCache {
+    private boolean debug;
+
+    private PApplet parent;
+
+    //resource name, or resource name and size for resized copies -> image
+    private HashMap<String, PImage> images;
+    private HashMap<String, PFont> fonts;
+
+    private int loads = 0;
+
+    /**
+     * Class constructor.
+     * @param parent the Quickshow object
+     * @param debug whether debug statements are enabled
+     */
+    public AssetCache(PApplet parent, boolean debug) {
+        this.parent = parent;
+        this.debug = debug;
+
+        images = new HashMap<String, PImage>();
+        fonts = new HashMap<String, PFont>();
+    }
+
+    /**
+     * Retrieves an image from the data directory, loading it on first use.
+     *   The image is shared and must not be modified.
+     * @param name the path of the image relative to the data directory
+     * @return a PImage object, or null if the image could not be loaded
+     */
+    public synchronized PImage getImage(String name) {
+        PImage image = images.get(name);
+
+        if(image == null && !images.containsKey(name)) {
+            image = parent.loadImage("data/" + name);
+
+            //failures are remembered so they are not retried every call
+            images.put(name, image);
+            loads++;
+
+            if(debug) {
+                Quickshow.println("asset loaded: " + name +
+                    (image == null ? " (failed)" : ""));
+            }
+        }
+
+        return image;
+    }
+
+    /**
+     * Retrieves a resized copy of an image from the data directory, resizing
+     *   it on first use. The copy is shared and must not be modified.
+     * @param name the path of the image relative to the data directory
+     * @param width the width of the copy
+     * @param height the height of the copy
+     * @return a PImage object, or null if the image could not be loaded
+     */
+    public synchronized PImage getImage(String name, int width, int height) {
+        String key = name + '@' + width + 'x' + height;
+        PImage image = images.get(key);
+
+        if(image == null) {
+            PImage source = getImage(name);
+
+            if(source == null) {
+                return null;
+            }
+
+            if(source.width == width && source.height == height) {
+                image = source;
+            }
+
+            else {
+                image = source.get();
+                image.resize(width, height);
+            }
+
+            images.put(key, image);
+        }
+
+        return image;
+    }
+
+    /**
+     * Retrieves a font from the data directory, loading it on first use. The
+     *   font is shared.
+     * @param name the path of the font relative to the data directory
+     * @return a PFont object, or null if the font could not be loaded
+     */
+    public synchronized PFont getFont(String name) {
+        PFont font = fonts.get(name);
+
+        if(font == null && !fonts.containsKey(name)) {
+            font = parent.loadFont("data/" + name);
+
+            fonts.put(name, font);
+            loads++;
+
+            if(debug) {
+                Quickshow.println("asset loaded: " + name +
+                    (font == null ? " (failed)" : ""));
+            }
+        }
+
+        return font;
+    }
+
+    /**
+     * Retrieves the number of resources read from disk.
+     * @return integer
+     */
+    public synchronized int getLoads() {
+        return loads;
+    }
+}
@@ -0,0 +1,600 @@
+/**
+ * @file AudioHeaderReader.java
+ * @description Reads the title, author and length of audio files from their
+ *   headers and tags without decoding any audio.
+ */
+
+package quickshow;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.Charset;
+
+public final class AudioHeaderReader {
+    /**
+     * The metadata read from an audio file. Fields that could not be read
+     *   are left empty or zero.
+     */
+    public static final class Header {
+        public String title = "";
+        public String author = "";
+
+        //length in milliseconds
+        public int length = 0;
+    }
+
+    private static final int[][] MPEG_BITRATES = {
+        //MPEG 1 layer I, II, III
+        {0, 32, 64, 96, 128, 160, 192, 224, 256, 288, 320, 352, 384, 416, 448},
+        {0, 32, 48, 56, 64, 80, 96, 112, 128, 160, 192, 224, 256, 320, 384},
+        {0, 32, 40, 48, 56, 64, 80, 96, 112, 128, 160, 192, 224, 256, 320},
+
+        //MPEG 2 and 2.5 layer I, II and III
+        {0, 32, 48, 56, 64, 80, 96, 112, 128, 144, 160, 176, 192, 224, 256},
+        {0, 8, 16, 24, 32, 40, 48, 56, 64, 80, 96, 112, 128, 144, 160}
+    };
+
+    private static final int[] MPEG_SAMPLE_RATES = {44100, 48000, 32000};
+
+    //furthest distance searched for the first MPEG frame
+    private static final int MPEG_SCAN_LENGTH = 65536;
+
+    //largest tag text frame read
+    private static final int MAX_TEXT_FRAME = 4096;
+
+    private static final Charset LATIN_1 = Charset.forName("ISO-8859-1");
+
+    /**
+     * Class constructor. Not used.
+     */
+    private AudioHeaderReader() {}
+
+    /**
+     * Reads the metadata of an audio file. WAV, AIFF and AU headers are
+     *   recognized, as are MP3 files with ID3v1 or ID3v2 tags.
+     * @param fileName the file name of the audio file
+     * @return a Header object, with empty fields if nothing could be read
+     */
+    public static Header read(String fileName) {
+        Header result = new Header();
+        RandomAccessFile file = null;
+
+        try {
+            file = new RandomAccessFile(fileName, "r");
+
+            byte[] magic = new byte[12];
+            file.readFully(magic);
+
+            String id = new String(magic, 0, 4, LATIN_1);
+            String form = new String(magic, 8, 4, LATIN_1);
+
+            if(id.equals("RIFF") && form.equals("WAVE")) {
+                readWave(file, result);
+            }
+
+            else if(id.equals("FORM") &&
+                (form.equals("AIFF") || form.equals("AIFC")))
+            {
+                readAiff(file, result);
+            }
+
+            else if(id.equals(".snd")) {
+                readAu(file, result);
+            }
+
+            else {
+                readMpeg(file, result);
+            }
+        }
+
+        catch(IOException | RuntimeException e) {}
+
+        finally {
+            if(file != null) {
+                try {
+                    file.close();
+                }
+
+                catch(IOException e) {}
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Reads the chunks of a RIFF WAVE file.
+     * @param file the audio file, positioned after the RIFF header
+     * @param result the Header to fill
+     */
+    private static void readWave(RandomAccessFile file, Header result)
+        throws IOException
+    {
+        long byteRate = 0, dataSize = 0;
+        long end = file.length();
+        String id;
+        long size, next;
+
+        while(file.getFilePointer() + 8 <= end) {
+            id = readId(file);
+            size = Integer.reverseBytes(file.readInt()) & 0xffffffffL;
+
+            //chunks are padded to an even length
+            next = file.getFilePointer() + size + (size & 1);
+
+            if(id.equals("fmt ") && size >= 12) {
+                file.skipBytes(8);
+                byteRate = Integer.reverseBytes(file.readInt()) & 0xffffffffL;
+            }
+
+            else if(id.equals("data")) {
+                dataSize = Math.min(size, end - file.getFilePointer());
+            }
+
+            else if(id.equals("LIST") && size >= 4 &&
+                readId(file).equals("INFO"))
+            {
+                long listEnd = file.getFilePointer() + size - 4;
+                String tag;
+                int tagSize;
+
+                while(file.getFilePointer() + 8 <= listEnd) {
+                    tag = readId(file);
+                    tagSize = Integer.reverseBytes(file.readInt());
+
+                    if(tagSize < 0 || tagSize > MAX_TEXT_FRAME) {
+                        break;
+                    }
+
+                    byte[] text = new byte[tagSize];
+                    file.readFully(text);
+
+                    if(tag.equals("INAM")) {
+                        result.title = decodeText(text, 0, tagSize, 0);
+                    }
+
+                    else if(tag.equals("IART")) {
+                        result.author = decodeText(text, 0, tagSize, 0);
+                    }
+
+                    if((tagSize & 1) != 0) {
+                        file.skipBytes(1);
+                    }
+                }
+            }
+
+            file.seek(next);
+        }
+
+        if(byteRate > 0) {
+            result.length = (int)(dataSize * 1000 / byteRate);
+        }
+    }
+
+    /**
+     * Reads the chunks of an AIFF or AIFF-C file.
+     * @param file the audio file, positioned after the FORM header
+     * @param result the Header to fill
+     */
+    private static void readAiff(RandomAccessFile file, Header result)
+        throws IOException
+    {
+        long end = file.length();
+        String id;
+        long size, next;
+
+        while(file.getFilePointer() + 8 <= end) {
+            id = readId(file);
+            size = file.readInt() & 0xffffffffL;
+            next = file.getFilePointer() + size + (size & 1);
+
+            if(id.equals("COMM") && size >= 18) {
+                file.skipBytes(2);
+                long frames = file.readInt() & 0xffffffffL;
+                file.skipBytes(2);
+
+                byte[] rate = new byte[10];
+                file.readFully(rate);
+                double sampleRate = readExtended(rate);
+
+                if(sampleRate > 0) {
+                    result.length = (int)(frames * 1000 / sampleRate);
+                }
+            }
+
+            else if((id.equals("NAME") || id.equals("AUTH")) &&
+                size <= MAX_TEXT_FRAME)
+            {
+                byte[] text = new byte[(int)size];
+                file.readFully(text);
+
+                if(id.equals("NAME")) {
+                    result.title = decodeText(text, 0, text.length, 0);
+                }
+
+                else {
+                    result.author = decodeText(text, 0, text.length, 0);
+                }
+            }
+
+            file.seek(next);
+        }
+    }
+
+    /**
+     * Reads the header of a Sun AU file.
+     * @param file the audio file, positioned after the first 12 bytes
+     * @param result the Header to fill
+     */
+    private static void readAu(RandomAccessFile file, Header result)
+        throws IOException
+    {
+        file.seek(4);
+        long offset = file.readInt() & 0xffffffffL;
+        long dataSize = file.readInt() & 0xffffffffL;
+        int encoding = file.readInt();
+        int sampleRate = file.readInt();
+        int channels = file.readInt();
+
+        //unknown data size
+        if(dataSize == 0xffffffffL) {
+            dataSize = file.length() - offset;
+        }
+
+        int sampleSize;
+        switch(encoding) {
+        case 1: case 2: case 27:
+            sampleSize = 1;
+            break;
+
+        case 3:
+            sampleSize = 2;
+            break;
+
+        case 4:
+            sampleSize = 3;
+            break;
+
+        case 5: case 6:
+            sampleSize = 4;
+            break;
+
+        case 7:
+            sampleSize = 8;
+            break;
+
+        default:
+            return;
+        }
+
+        if(sampleRate > 0 && channels > 0) {
+            result.length = (int)(dataSize * 1000 /
+                ((long)sampleSize * channels * sampleRate));
+        }
+    }
+
+    /**
+     * Reads the ID3 tags and first frame header of an MPEG audio file.
+     * @param file the audio file
+     * @param result the Header to fill
+     */
+    private static void readMpeg(RandomAccessFile file, Header result)
+        throws IOException
+    {
+        long audioStart = 0, audioEnd = file.length();
+
+        file.seek(0);
+        byte[] header = new byte[10];
+        file.readFully(header);
+
+        if(header[0] == 'I' && header[1] == 'D' && header[2] == '3') {
+            audioStart = 10 + readSyncSafe(header, 6);
+
+            if((header[5] & 0x10) != 0) {
+                //footer
+                audioStart += 10;
+            }
+
+            readId3v2(file, header[3], header[5], audioStart, result);
+        }
+
+        if(audioEnd >= 128) {
+            byte[] tag = new byte[128];
+            file.seek(audioEnd - 128);
+            file.readFully(tag);
+
+            if(tag[0] == 'T' && tag[1] == 'A' && tag[2] == 'G') {
+                audioEnd -= 128;
+
+                if(result.title.isEmpty()) {
+                    result.title = decodeText(tag, 3, 30, 0);
+                }
+
+                if(result.author.isEmpty()) {
+                    result.author = decodeText(tag, 33, 30, 0);
+                }
+            }
+        }
+
+        if(result.length == 0) {
+            result.length = readMpegLength(file, audioStart, audioEnd);
+        }
+    }
+
+    /**
+     * Reads the title, author and length frames of an ID3v2 tag.
+     * @param file the audio file
+     * @param version the major version of the tag
+     * @param flags the tag flags
+     * @param end the position of the end of the tag
+     * @param result the Header to fill
+     */
+    private static void readId3v2(RandomAccessFile file, int version,
+        int flags, long end, Header result) throws IOException
+    {
+        if(version < 2 || version > 4) {
+            return;
+        }
+
+        file.seek(10);
+
+        //extended header
+        if(version > 2 && (flags & 0x40) != 0) {
+            int size = file.readInt();
+
+            file.seek(file.getFilePointer() +
+                (version == 4 ? decodeSyncSafe(size) - 4 : size));
+        }
+
+        int idLength = (version == 2 ? 3 : 4);
+        int headerLength = (version == 2 ? 6 : 10);
+        byte[] frameHeader = new byte[headerLength];
+        String id;
+        int size;
+
+        while(file.getFilePointer() + headerLength <= end) {
+            file.readFully(frameHeader);
+
+            //padding
+            if(frameHeader[0] == 0) {
+                break;
+            }
+
+            id = new String(frameHeader, 0, idLength, LATIN_1);
+
+            if(version == 2) {
+                size = ((frameHeader[3] & 0xff) << 16) |
+                    ((frameHeader[4] & 0xff) << 8) | (frameHeader[5] & 0xff);
+            }
+
+            else if(version == 3) {
+                size = readInt(frameHeader, 4);
+            }
+
+            else {
+                size = readSyncSafe(frameHeader, 4);
+            }
+
+            if(size < 0 || file.getFilePointer() + size > end) {
+                break;
+            }
+
+            if(size > 1 && size <= MAX_TEXT_FRAME && (id.equals("TIT2") ||
+                id.equals("TT2") || id.equals("TPE1") || id.equals("TP1") ||
+                id.equals("TLEN") || id.equals("TLE")))
+            {
+                byte[] text = new byte[size];
+                file.readFully(text);
+
+                String value = decodeText(text, 1, size - 1, text[0]);
+
+                if(id.startsWith("TT") || id.equals("TIT2")) {
+                    result.title = value;
+                }
+
+                else if(id.startsWith("TP")) {
+                    result.author = value;
+                }
+
+                else {
+                    try {
+                        result.length = Integer.parseInt(value);
+                    }
+
+                    catch(NumberFormatException e) {}
+                }
+            }
+
+            else {
+                file.seek(file.getFilePointer() + size);
+            }
+        }
+    }
+
+    /**
+     * Estimates the length of MPEG audio from its first frame header, using
+     *   the Xing or VBRI frame count of variable bit rate files.
+     * @param file the audio file
+     * @param audioStart the position of the audio data
+     * @param audioEnd the position of the end of the audio data
+     * @return the length in milliseconds, or 0 if no frame was found
+     */
+    private static int readMpegLength(RandomAccessFile file, long audioStart,
+        long audioEnd) throws IOException
+    {
+        byte[] buf = new byte[(int)Math.min(MPEG_SCAN_LENGTH,
+            audioEnd - audioStart)];
+
+        file.seek(audioStart);
+        file.readFully(buf);
+
+        int version, layer, bitrate, sampleRate, samples, sideInfo;
+
+        for(int i = 0; i + 4 <= buf.length; i++) {
+            if((buf[i] & 0xff) != 0xff || (buf[i+1] & 0xe0) != 0xe0) {
+                continue;
+            }
+
+            //3 = MPEG 1, 2 = MPEG 2, 0 = MPEG 2.5
+            version = (buf[i+1] >> 3) & 3;
+
+            //3 = layer I, 2 = layer II, 1 = layer III
+            layer = (buf[i+1] >> 1) & 3;
+
+            int bitrateIndex = (buf[i+2] >> 4) & 0xf;
+            int rateIndex = (buf[i+2] >> 2) & 3;
+
+            if(version == 1 || layer == 0 || bitrateIndex == 0 ||
+                bitrateIndex == 15 || rateIndex == 3)
+            {
+                continue;
+            }
+
+            bitrate = MPEG_BITRATES[version == 3 ? 3 - layer :
+                (layer == 3 ? 3 : 4)][bitrateIndex] * 1000;
+
+            sampleRate = MPEG_SAMPLE_RATES[rateIndex] >>
+                (version == 3 ? 0 : (version == 2 ? 1 : 2));
+
+            samples = (layer == 3 ? 384 :
+                (layer == 1 && version != 3 ? 576 : 1152));
+
+            boolean mono = ((buf[i+3] >> 6) & 3) == 3;
+            sideInfo = (version == 3 ? (mono ? 17 : 32) : (mono ? 9 : 17));
+
+            long frames = -1;
+
+            int xing = i + 4 + sideInfo;
+            int vbri = i + 4 + 32;
+
+            if(xing + 12 <= buf.length && (matches(buf, xing, "Xing") ||
+                matches(buf, xing, "Info")) && (buf[xing+7] & 1) != 0)
+            {
+                frames = readInt(buf, xing + 8) & 0xffffffffL;
+            }
+
+            else if(vbri + 18 <= buf.length && matches(buf, vbri, "VBRI")) {
+                frames = readInt(buf, vbri + 14) & 0xffffffffL;
+            }
+
+            if(frames > 0) {
+                return (int)(frames * samples * 1000 / sampleRate);
+            }
+
+            return (int)((audioEnd - audioStart - i) * 8000 / bitrate);
+        }
+
+        return 0;
+    }
+
+    /**
+     * Decodes tag text, stopping at the first null character.
+     * @param data the tag data
+     * @param offset the index of the text
+     * @param length the length of the text in bytes
+     * @param encoding the ID3v2 text encoding
+     * @return the trimmed text
+     */
+    private static String decodeText(byte[] data, int offset, int length,
+        int encoding)
+    {
+        String charset;
+        switch(encoding) {
+        case 1:
+            charset = "UTF-16";
+            break;
+
+        case 2:
+            charset = "UTF-16BE";
+            break;
+
+        case 3:
+            charset = "UTF-8";
+            break;
+
+        default:
+            charset = "ISO-8859-1";
+        }
+
+        String text = new String(data, offset, length, Charset.forName(charset));
+
+        int end = text.indexOf('\0');
+
+        return (end < 0 ? text : text.substring(0, end)).trim();
+    }
+
+    /**
+     * Reads a four character chunk identifier.
+     * @param file the audio file
+     * @return the identifier as a String
+     */
+    private static String readId(RandomAccessFile file) throws IOException {
+        byte[] id = new byte[4];
+        file.readFully(id);
+
+        return new String(id, LATIN_1);
+    }
+
+    /**
+     * Checks if data contains a four character identifier.
+     * @param data the data to check
+     * @param i the index of the identifier
+     * @param id the identifier
+     * @return true if the identifier is present
+     */
+    private static boolean matches(byte[] data, int i, String id) {
+        for(int j = 0; j < 4; j++) {
+            if(data[i+j] != id.charAt(j)) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Reads a big endian 32-bit value.
+     * @param data the data
+     * @param i the index of the value
+     * @return integer
+     */
+    private static int readInt(byte[] data, int i) {
+        return ((data[i] & 0xff) << 24) | ((data[i+1] & 0xff) << 16) |
+            ((data[i+2] & 0xff) << 8) | (data[i+3] & 0xff);
+    }
+
+    /**
+     * Reads an ID3v2 sync-safe 28-bit value.
+     * @param data the data
+     * @param i the index of the value
+     * @return integer
+     */
+    private static int readSyncSafe(byte[] data, int i) {
+        return decodeSyncSafe(readInt(data, i));
+    }
+
+    /**
+     * Removes the unused high bit of each byte of a sync-safe value.
+     * @param value the sync-safe value
+     * @return integer
+     */
+    private static int decodeSyncSafe(int value) {
+        return ((value >> 3) & 0x0fe00000) | ((value >> 2) & 0x001fc000) |
+            ((value >> 1) & 0x00003f80) | (value & 0x7f);
+    }
+
+    /**
+     * Converts an 80-bit IEEE 754 extended precision value, as used for AIFF
+     *   sample rates.
+     * @param data the 10 bytes of the value
+     * @return the value as a double
+     */
+    private static double readExtended(byte[] data) {
+        int exponent = ((data[0] & 0x7f) << 8) | (data[1] & 0xff);
+
+        long hi = readInt(data, 2) & 0xffffffffL;
+        long lo = readInt(data, 6) & 0xffffffffL;
+
+        return (hi * 4294967296.0 + lo) * Math.pow(2, exponent - 16383 - 63);
+    }
+}
@@ -0,0 +1,183 @@
+/**
+ * @file DirectoryScanner.java
+ * @description Lists the directories and supported media files of a
+ *   directory on a background thread.
+ */
+
+package quickshow;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+import quickshow.datatypes.MediaType;
+
+public class DirectoryScanner {
+    /**
+     * The sorted contents of a directory, grouped by type.
+     */
+    public static final class Listing {
+        public final String dir;
+        public final ArrayList<String> dirs = new ArrayList<String>();
+        public final ArrayList<String> images = new ArrayList<String>();
+        public final ArrayList<String> videos = new ArrayList<String>();
+        public final ArrayList<String> audio = new ArrayList<String>();
+
+        //time taken to scan the directory in milliseconds
+        public long scanTime;
+
+        /**
+         * Class constructor.
+         * @param dir the path of the listed directory
+         */
+        private Listing(String dir) {
+            this.dir = dir;
+        }
+    }
+
+    private boolean debug;
+
+    private ExecutorService worker;
+
+    /**
+     * Class constructor.
+     * @param debug whether debug statements are enabled
+     */
+    public DirectoryScanner(boolean debug) {
+        this.debug = debug;
+
+        worker = Executors.newSingleThreadExecutor(new ThreadFactory() {
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "quickshow-scan");
+
+                thread.setDaemon(true);
+
+                return thread;
+            }
+        });
+    }
+
+    /**
+     * Queues a directory for scanning.
+     * @param dir the path of the directory
+     * @return a Future holding the Listing, or null if the directory could
+     *   not be read
+     */
+    public Future<Listing> submit(final String dir) {
+        return worker.submit(new Callable<Listing>() {
+            public Listing call() {
+                return scan(dir);
+            }
+        });
+    }
+
+    /**
+     * Stops the worker thread.
+     */
+    public void shutdown() {
+        worker.shutdownNow();
+    }
+
+    /**
+     * Lists a directory. Each entry is visited once, with its attributes
+     *   read together rather than through separate queries, and classified
+     *   by its MediaType.
+     * @param dir the path of the directory
+     * @return a Listing object, or null if the directory could not be read
+     */
+    public Listing scan(String dir) {
+        long start = System.nanoTime();
+
+        Listing result = new Listing(dir);
+        DirectoryStream<Path> stream = null;
+
+        try {
+            stream = Files.newDirectoryStream(Paths.get(dir));
+
+            BasicFileAttributes attrs;
+            String name;
+            MediaType type;
+
+            for(Path entry : stream) {
+                if(Thread.currentThread().isInterrupted()) {
+                    return null;
+                }
+
+                name = entry.getFileName().toString();
+
+                try {
+                    attrs = Files.readAttributes(entry,
+                        BasicFileAttributes.class);
+                }
+
+                //entry removed while listing
+                catch(IOException e) {
+                    continue;
+                }
+
+                if(attrs.isDirectory()) {
+                    result.dirs.add(name);
+
+                    continue;
+                }
+
+                type = MediaType.classify(entry.toString());
+
+                if(type == null) {
+                    continue;
+                }
+
+                switch(type) {
+                case IMAGE:
+                    result.images.add(name);
+                    break;
+
+                case VIDEO:
+                    result.videos.add(name);
+                    break;
+
+                case AUDIO:
+                    result.audio.add(name);
+                    break;
+                }
+            }
+        }
+
+        catch(IOException | RuntimeException e) {
+            if(debug) {
+                e.printStackTrace();
+            }
+
+            return null;
+        }
+
+        finally {
+            if(stream != null) {
+                try {
+                    stream.close();
+                }
+
+                catch(IOException e) {}
+            }
+        }
+
+        Collections.sort(result.dirs, String.CASE_INSENSITIVE_ORDER);
+        Collections.sort(result.images, String.CASE_INSENSITIVE_ORDER);
+        Collections.sort(result.videos, String.CASE_INSENSITIVE_ORDER);
+        Collections.sort(result.audio, String.CASE_INSENSITIVE_ORDER);
+
+        result.scanTime = (System.nanoTime() - start) / 1000000;
+
+        return result;
+    }
+}
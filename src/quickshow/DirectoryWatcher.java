@@ -0,0 +1,272 @@
+/**
+ * @file DirectoryWatcher.java
+ * @description Reports entries created, deleted or modified in a watched
+ *   directory. Created and modified files are reported once they stop
+ *   changing, so that files still being written are not read.
+ */
+
+package quickshow;
+
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+public class DirectoryWatcher {
+    /**
+     * A change to the watched directory.
+     */
+    public static final class Change {
+        public final WatchEvent.Kind<?> kind;
+
+        //name of the changed entry, or null if events were lost
+        public final String name;
+
+        /**
+         * Class constructor.
+         * @param kind the kind of change
+         * @param name the name of the changed entry
+         */
+        private Change(WatchEvent.Kind<?> kind, String name) {
+            this.kind = kind;
+            this.name = name;
+        }
+    }
+
+    /**
+     * A created or modified entry waiting to stop changing.
+     */
+    private static final class Settling {
+        private WatchEvent.Kind<?> kind;
+        private long size = -1, modified = -1;
+
+        //time of the last observed change in milliseconds
+        private long since;
+
+        /**
+         * Class constructor.
+         * @param kind the kind of the first change
+         * @param since the time of the change in milliseconds
+         */
+        private Settling(WatchEvent.Kind<?> kind, long since) {
+            this.kind = kind;
+            this.since = since;
+        }
+    }
+
+    private boolean debug;
+
+    private WatchService service = null;
+    private WatchKey key = null;
+    private Path dir = null;
+
+    //created or modified entries not yet reported, by name
+    private LinkedHashMap<String, Settling> settling;
+    private long nextCheck = 0;
+
+    //time an entry must stay unchanged before it is reported in milliseconds
+    private static final long SETTLE_TIME = 1000;
+
+    //minimum time between checks of settling entries in milliseconds
+    private static final long CHECK_INTERVAL = 250;
+
+    /**
+     * Class constructor. Changes are not reported if the file system does
+     *   not support watching.
+     * @param debug whether debug statements are enabled
+     */
+    public DirectoryWatcher(boolean debug) {
+        this.debug = debug;
+
+        settling = new LinkedHashMap<String, Settling>();
+
+        try {
+            service = FileSystems.getDefault().newWatchService();
+        }
+
+        catch(IOException | UnsupportedOperationException e) {
+            if(debug) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Watches a new directory, replacing the previously watched one.
+     * @param path the path of the directory
+     */
+    public void watch(String path) {
+        if(key != null) {
+            key.cancel();
+            key = null;
+        }
+
+        settling.clear();
+        dir = Paths.get(path);
+
+        if(service == null) {
+            return;
+        }
+
+        try {
+            key = dir.register(service,
+                StandardWatchEventKinds.ENTRY_CREATE,
+                StandardWatchEventKinds.ENTRY_DELETE,
+                StandardWatchEventKinds.ENTRY_MODIFY);
+        }
+
+        catch(IOException | RuntimeException e) {
+            if(debug) {
+                Quickshow.println("cannot watch " + path);
+            }
+        }
+    }
+
+    /**
+     * Retrieves the changes to the watched directory since the last call,
+     *   without blocking. Created and modified files are reported once
+     *   their size and modification time have been unchanged for
+     *   SETTLE_TIME milliseconds. An OVERFLOW change means events were lost
+     *   and the directory must be listed again.
+     * @return an ArrayList of Change objects
+     */
+    public ArrayList<Change> poll() {
+        ArrayList<Change> result = new ArrayList<Change>();
+
+        if(service == null) {
+            return result;
+        }
+
+        long now = System.currentTimeMillis();
+        String name;
+        Settling entry;
+
+        WatchKey next;
+        while((next = service.poll()) != null) {
+            //keys of previously watched directories are dropped
+            if(next == key) {
+                for(WatchEvent<?> event : next.pollEvents()) {
+                    if(event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                        settling.clear();
+
+                        result.add(new Change(event.kind(), null));
+
+                        continue;
+                    }
+
+                    name = ((Path)event.context()).toString();
+
+                    if(event.kind() == StandardWatchEventKinds.ENTRY_DELETE) {
+                        settling.remove(name);
+
+                        result.add(new Change(event.kind(), name));
+                    }
+
+                    else if((entry = settling.get(name)) != null) {
+                        entry.since = now;
+                    }
+
+                    else {
+                        settling.put(name, new Settling(event.kind(), now));
+                    }
+                }
+
+                next.reset();
+            }
+        }
+
+        if(!settling.isEmpty() && now >= nextCheck) {
+            nextCheck = now + CHECK_INTERVAL;
+
+            settle(now, result);
+        }
+
+        return result;
+    }
+
+    /**
+     * Checks if an entry has changed recently and has not been reported
+     *   yet.
+     * @param name the name of the entry
+     * @return true if the entry may still be changing
+     */
+    public boolean isSettling(String name) {
+        return settling.containsKey(name);
+    }
+
+    /**
+     * Stops watching and releases the watch service.
+     */
+    public void close() {
+        if(service != null) {
+            try {
+                service.close();
+            }
+
+            catch(IOException e) {}
+
+            service = null;
+        }
+    }
+    /**
+     * Reports the settling entries that have stopped changing. Directories
+     *   are reported immediately, and entries deleted in the meantime are
+     *   dropped, since their deletion is reported separately.
+     * @param now the current time in milliseconds
+     * @param result the list receiving the Change objects
+     */
+    private void settle(long now, ArrayList<Change> result) {
+        Iterator<Map.Entry<String, Settling>> iter = settling.entrySet()
+            .iterator();
+        Map.Entry<String, Settling> next;
+        BasicFileAttributes attrs;
+        Settling entry;
+
+        while(iter.hasNext()) {
+            next = iter.next();
+            entry = next.getValue();
+
+            try {
+                attrs = Files.readAttributes(dir.resolve(next.getKey()),
+                    BasicFileAttributes.class);
+            }
+
+            catch(IOException e) {
+                iter.remove();
+
+                continue;
+            }
+
+            if(!attrs.isDirectory()) {
+                long modified = attrs.lastModifiedTime().toMillis();
+
+                //writes do not always raise events, so compare attributes
+                if(attrs.size() != entry.size || modified != entry.modified) {
+                    entry.size = attrs.size();
+                    entry.modified = modified;
+                    entry.since = now;
+
+                    continue;
+                }
+
+                if(now - entry.since < SETTLE_TIME) {
+                    continue;
+                }
+            }
+
+            iter.remove();
+
+            result.add(new Change(entry.kind, next.getKey()));
+        }
+    }
+}
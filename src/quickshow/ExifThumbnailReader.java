@@ -0,0 +1,231 @@
+/**
+ * @file ExifThumbnailReader.java
+ * @description Extracts the preview image embedded in the EXIF metadata of
+ *   JPEG files without decoding the main image.
+ */
+
+package quickshow;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+import javax.imageio.ImageIO;
+
+import processing.core.PImage;
+
+public final class ExifThumbnailReader {
+    //largest acceptable difference in aspect ratio from the main image
+    private static final float ASPECT_TOLERANCE = 0.03f;
+
+    /**
+     * Class constructor. Not used.
+     */
+    private ExifThumbnailReader() {}
+
+    /**
+     * Reads the embedded EXIF preview of a JPEG file. Only the marker
+     *   segments preceding the image data are read. Previews that do not
+     *   match the aspect ratio of the main image, such as letterboxed ones,
+     *   are rejected.
+     * @param fileName the file name of the JPEG file
+     * @return a PImage object, or null if no usable preview exists
+     */
+    public static PImage read(String fileName) {
+        RandomAccessFile file = null;
+
+        try {
+            file = new RandomAccessFile(fileName, "r");
+
+            //start of image
+            if(file.readUnsignedShort() != 0xffd8) {
+                return null;
+            }
+
+            byte[] exif = null;
+            int width = 0, height = 0;
+            int marker, length;
+
+            while(width == 0) {
+                marker = file.readUnsignedShort();
+
+                //fill bytes
+                while(marker == 0xffff) {
+                    marker = 0xff00 | file.readUnsignedByte();
+                }
+
+                //no frame header before the image data
+                if((marker & 0xff00) != 0xff00 || marker == 0xffda ||
+                    marker == 0xffd9)
+                {
+                    return null;
+                }
+
+                length = file.readUnsignedShort() - 2;
+
+                if(length < 0) {
+                    return null;
+                }
+
+                if(marker == 0xffe1 && exif == null) {
+                    byte[] segment = new byte[length];
+                    file.readFully(segment);
+
+                    if(isExif(segment)) {
+                        exif = segment;
+                    }
+                }
+
+                else if(isFrameHeader(marker)) {
+                    file.readUnsignedByte();
+
+                    height = file.readUnsignedShort();
+                    width = file.readUnsignedShort();
+                }
+
+                else {
+                    file.seek(file.getFilePointer() + length);
+                }
+            }
+
+            if(exif == null || height == 0) {
+                return null;
+            }
+
+            byte[] preview = extractPreview(exif);
+
+            if(preview == null) {
+                return null;
+            }
+
+            BufferedImage image = ImageIO.read(
+                new ByteArrayInputStream(preview));
+
+            if(image == null) {
+                return null;
+            }
+
+            float aspect = 1f * width / height;
+            float previewAspect = 1f * image.getWidth() / image.getHeight();
+
+            if(Math.abs(previewAspect - aspect) > aspect * ASPECT_TOLERANCE) {
+                return null;
+            }
+
+            return ImageDecoder.toPImage(image);
+        }
+
+        catch(IOException | RuntimeException e) {
+            return null;
+        }
+
+        finally {
+            if(file != null) {
+                try {
+                    file.close();
+                }
+
+                catch(IOException e) {}
+            }
+        }
+    }
+
+    /**
+     * Checks if a marker is a JPEG start of frame marker.
+     * @param marker the marker
+     * @return true if the marker starts a frame header
+     */
+    private static boolean isFrameHeader(int marker) {
+        return marker >= 0xffc0 && marker <= 0xffcf && marker != 0xffc4 &&
+            marker != 0xffc8 && marker != 0xffcc;
+    }
+
+    /**
+     * Checks if an APP1 segment contains EXIF data.
+     * @param segment the segment contents
+     * @return true if the segment begins with the EXIF identifier
+     */
+    private static boolean isExif(byte[] segment) {
+        return segment.length > 14 && segment[0] == 'E' &&
+            segment[1] == 'x' && segment[2] == 'i' && segment[3] == 'f' &&
+            segment[4] == 0 && segment[5] == 0;
+    }
+
+    /**
+     * Locates the JPEG preview stored in the second image file directory of
+     *   the EXIF TIFF structure.
+     * @param exif the APP1 segment contents
+     * @return the preview JPEG data, or null if none is present
+     */
+    private static byte[] extractPreview(byte[] exif) {
+        //TIFF header follows the EXIF identifier
+        final int base = 6;
+
+        boolean little = exif[base] == 'I' && exif[base+1] == 'I';
+
+        int ifd0 = readInt(exif, base + 4, little);
+        int count = readShort(exif, base + ifd0, little);
+        int ifd1 = readInt(exif, base + ifd0 + 2 + 12*count, little);
+
+        if(ifd1 == 0) {
+            return null;
+        }
+
+        count = readShort(exif, base + ifd1, little);
+
+        int offset = -1, length = -1, entry, tag;
+
+        for(int i = 0; i < count; i++) {
+            entry = base + ifd1 + 2 + 12*i;
+            tag = readShort(exif, entry, little);
+
+            //JPEGInterchangeFormat
+            if(tag == 0x0201) {
+                offset = readInt(exif, entry + 8, little);
+            }
+
+            //JPEGInterchangeFormatLength
+            else if(tag == 0x0202) {
+                length = readInt(exif, entry + 8, little);
+            }
+        }
+
+        if(offset <= 0 || length <= 0 ||
+            base + offset + length > exif.length)
+        {
+            return null;
+        }
+
+        byte[] result = new byte[length];
+        System.arraycopy(exif, base + offset, result, 0, length);
+
+        return result;
+    }
+
+    /**
+     * Reads an unsigned 16-bit TIFF value.
+     * @param data the TIFF data
+     * @param i the index of the value
+     * @param little whether the data is little endian
+     * @return integer
+     */
+    private static int readShort(byte[] data, int i, boolean little) {
+        int a = data[i] & 0xff, b = data[i+1] & 0xff;
+
+        return (little ? (b << 8) | a : (a << 8) | b);
+    }
+
+    /**
+     * Reads a 32-bit TIFF value.
+     * @param data the TIFF data
+     * @param i the index of the value
+     * @param little whether the data is little endian
+     * @return integer
+     */
+    private static int readInt(byte[] data, int i, boolean little) {
+        int a = readShort(data, i, little), b = readShort(data, i+2, little);
+
+        return (little ? (b << 16) | a : (a << 16) | b);
+    }
+}
@@ -8,19 +8,27 @@ package quickshow;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.StandardWatchEventKinds;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.ListIterator;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 
 import processing.core.PApplet;
 import processing.core.PConstants;
 import processing.core.PFont;
 import processing.core.PImage;
 import processing.data.IntList;
-import processing.video.Movie;
 import quickshow.datatypes.AudioItem;
-import quickshow.datatypes.FileExtensions;
 import quickshow.datatypes.ImageItem;
 import quickshow.datatypes.MediaItem;
+import quickshow.datatypes.MediaType;
 import quickshow.datatypes.MovieItem;
 import controlP5.Button;
 import controlP5.ControlEvent;
@@ -42,14 +50,40 @@ public class FileBrowser {
     private ArrayList<String> fileNames;
     private ArrayList<PImage> thumbs;
 
-    private ArrayList<QItem> q;
-    private ListIterator<QItem> qIter;
-    private QItem curQItem = null;
-    private Movie movie = null;
+    private VideoThumbnailService videoThumbs;
+
+    private DirectoryScanner scanner;
+    private LibraryImporter importer;
+    private boolean importing = false;
+    private DirectoryWatcher watcher;
+    private ThumbnailPrefetcher prefetcher;
+
+    //names of changed images whose thumbnails are regenerated by the
+    //prefetcher rather than on the animation thread
+    private HashSet<String> regenerating;
+    private Future<DirectoryScanner.Listing> scan = null;
 
     private IntList selectedIndex;
 
     private ArrayList<MediaItem> results;
+    private IngestPipeline ingest;
+    private ThumbnailStore thumbStore;
+    private AssetCache assets;
+
+    private File atlasDir;
+    //also read by the prefetch thread
+    private volatile ThumbnailAtlas atlas = null;
+    private boolean atlasDirty = false;
+
+    //rewrites atlas files off the animation thread, one at a time
+    private ExecutorService atlasWriter;
+    private int numDirs = 0;
+
+    //number of image files, or audio files in audio mode
+    private int numImages = 0;
+
+    //most recently visited directories, most recent last
+    private ArrayList<String> recentDirs;
 
     private int[] selectBox = {0, 0, 0, 0};
     private boolean isSelecting = false;
@@ -73,6 +107,18 @@ public class FileBrowser {
 
     private static final int thumbWidth = 136, thumbHeight = 102;
 
+    private static final String FOLDER_THUMB = "img/folderThumbNail.png";
+    private static final String AUDIO_THUMB = "img/audioThumbNail.png";
+
+    //maximum number of MediaItems handed to Quickshow per frame
+    private static final int BATCH_SIZE = 50;
+
+    //number of remembered recently visited directories
+    private static final int MAX_RECENT_DIRS = 16;
+
+    //maximum number of subdirectories prefetched per directory
+    private static final int PREFETCH_DIRS = 3;
+
     /**
      * Class constructor.
      * @param parent the instantiating Quickshow object
@@ -115,16 +161,48 @@ public class FileBrowser {
 
         fileNames = new ArrayList<String>();
         thumbs = new ArrayList<PImage>();
-        q = new ArrayList<QItem>();
-        qIter = q.listIterator();
 
         selectedIndex = new IntList(20);
 
         results = new ArrayList<MediaItem>();
+        ingest = new IngestPipeline(debug);
+        thumbStore = parent.getThumbnailStore();
+        assets = parent.getAssets();
+        videoThumbs = new VideoThumbnailService(parent, thumbStore, debug);
+        scanner = new DirectoryScanner(debug);
+        importer = new LibraryImporter(debug);
+        watcher = new DirectoryWatcher(debug);
+        prefetcher = new ThumbnailPrefetcher(scanner,
+            new ThumbnailPrefetcher.ThumbLoader() {
+                public PImage load(String path) {
+                    ThumbnailAtlas pageAtlas = atlas;
+                    PImage thumb = (pageAtlas != null ?
+                        pageAtlas.get(path) : null);
+
+                    return (thumb != null ? thumb : loadThumb(path));
+                }
+            }, debug);
+
+        recentDirs = new ArrayList<String>();
+        regenerating = new HashSet<String>();
+
+        atlasDir = new File(parent.getCacheDir(), "atlas");
+        atlasDir.mkdirs();
+
+        atlasWriter = Executors.newSingleThreadExecutor(new ThreadFactory() {
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "quickshow-atlas");
+
+                thread.setDaemon(true);
+                thread.setPriority(Thread.MIN_PRIORITY);
+
+                return thread;
+            }
+        });
 
         group = control.addGroup("fileBrowser").setLabel("").setVisible(false);
 
-        controllers = new Controller[8];
+        controllers = new Controller[9];
 
         controllers[7] = pathField = control.addTextfield("pathField")
             .setCaptionLabel("")
@@ -191,11 +269,19 @@ public class FileBrowser {
         controllers[6].getCaptionLabel().align(ControlP5Constants.CENTER,
             ControlP5Constants.CENTER);
 
+        controllers[8] = control.addButton("importButton")
+            .setCaptionLabel("Import")
+            .setPosition(685, 540)
+            .setSize(55, 30)
+            .setGroup(group);
+        controllers[8].getCaptionLabel().align(ControlP5Constants.CENTER,
+            ControlP5Constants.CENTER);
+
         String label = "Visual (bmp, jpg, png, gif, mov, avi, mpg, mp4)";
         mediaTypeList = control.addDropdownList("mediaTypeList")
             .setCaptionLabel(label)
             .setPosition(30, 570)
-            .setSize(710, 30)
+            .setSize(645, 30)
             .setBarHeight(30)
             .setGroup(group);
         mediaTypeList.getCaptionLabel().align(ControlP5Constants.LEFT,
@@ -254,7 +340,7 @@ public class FileBrowser {
                     else {
                         loadFile(file);
 
-                        if(!results.isEmpty()) {
+                        if(!results.isEmpty() || ingest.isBusy()) {
                             toggle(false);
                         }
                     }
@@ -274,6 +360,10 @@ public class FileBrowser {
             cancelButton();
             break;
 
+        case "importButton":
+            importButton();
+            break;
+
         case "mediaTypeList":
             mediaTypeList(e);
             break;
@@ -303,76 +393,213 @@ public class FileBrowser {
             return;
         }
 
-        String[] fileNameParts = path.split("\\.");
+        MediaType type = MediaType.classify(path);
 
-        int i;
-        for(i = 0; i < FileExtensions.AUDIO_EXT.length; i++) {
-            if(fileNameParts[fileNameParts.length-1]
-                .equalsIgnoreCase(FileExtensions.AUDIO_EXT[i]))
-            {
-                results.add(new AudioItem(minim, path));
+        if(type == MediaType.AUDIO) {
+            submitAudio(path);
+        }
 
-                break;
-            }
+        else if(type == MediaType.VIDEO) {
+            videoThumbs.submit(-1, path);
         }
 
-        if(i == FileExtensions.AUDIO_EXT.length) {
-            for(i = 0; i < FileExtensions.VIDEO_EXT.length; i++) {
-                if(fileNameParts[fileNameParts.length-1]
-                    .equalsIgnoreCase(FileExtensions.VIDEO_EXT[i]))
-                {
-                    qIter.add(new QItem(-1, path));
+        else if(type == MediaType.IMAGE) {
+            submitImage(path, null);
+        }
 
-                    getNextQItem();
+        if(debug) {
+            Quickshow.println("Files queued: " + ingest.getSubmitted());
+        }
+    }
 
-                    break;
-                }
+    /**
+     * Queues an image file for background loading.
+     * @param path the path of the image file
+     * @param thumb the image thumbnail, or null to generate one
+     */
+    private void submitImage(final String path, final PImage thumb) {
+        ingest.submit(new Callable<MediaItem>() {
+            public MediaItem call() {
+                return new ImageItem(parent, path,
+                    (thumb == null ? loadThumb(path) : thumb));
             }
+        });
+    }
 
-            if(i == FileExtensions.VIDEO_EXT.length) {
-                PImage thumb;
-                int[] thumbDims;
+    /**
+     * Queues a video file for background loading.
+     * @param path the path of the video file
+     * @param thumb the video thumbnail
+     */
+    private void submitVideo(final String path, final PImage thumb) {
+        ingest.submit(new Callable<MediaItem>() {
+            public MediaItem call() {
+                //only the header is read; no pipeline is created off-thread
+                return new MovieItem(parent, path, thumb);
+            }
+        });
+    }
+
+    /**
+     * Queues an audio file for background loading.
+     * @param path the path of the audio file
+     */
+    private void submitAudio(final String path) {
+        ingest.submit(new Callable<MediaItem>() {
+            public MediaItem call() {
+                //the player is loaded lazily on the animation thread
+                return new AudioItem(minim, path);
+            }
+        });
+    }
 
-                for(i = 0; i < FileExtensions.IMG_EXT.length; i++) {
-                    if(fileNameParts[fileNameParts.length-1]
-                        .equalsIgnoreCase(FileExtensions.IMG_EXT[i]))
-                    {
-                        thumb = parent.loadImage(path);
+    /**
+     * Generates the thumbnail for an image file. Stored thumbnails are used
+     *   if present. JPEG files with a large enough EXIF preview use it
+     *   directly; otherwise the image is subsampled while decoding so that
+     *   only about thumbnail-sized data is produced.
+     * @param path the path of the image file
+     * @return the thumbnail, or null if the image could not be loaded
+     */
+    private PImage loadThumb(String path) {
+        PImage thumb = thumbStore.get(path);
 
-                        thumbDims = newImageDims(thumb);
-                        thumb.resize(thumbDims[0], thumbDims[1]);
+        if(thumb != null) {
+            return thumb;
+        }
 
-                        results.add(new ImageItem(parent, path, thumb));
+        File file = new File(path);
+        long length = file.length(), modified = file.lastModified();
 
-                        break;
-                    }
-                }
+        thumb = ExifThumbnailReader.read(path);
+
+        if(thumb != null) {
+            int[] thumbDims = newImageDims(thumb);
+
+            //never enlarge the preview
+            if(thumb.width < thumbDims[0] || thumb.height < thumbDims[1]) {
+                thumb = null;
             }
         }
 
-        if(debug) {
-            Quickshow.println("Files loaded: " + results.size());
+        //thumbnails are at most thumbWidth on either side
+        if(thumb == null) {
+            thumb = ImageDecoder.decodeSubsampled(path, thumbWidth,
+                thumbWidth);
         }
+
+        if(thumb == null) {
+            thumb = parent.loadImage(path);
+        }
+
+        if(thumb != null) {
+            int[] thumbDims = newImageDims(thumb);
+            thumb.resize(thumbDims[0], thumbDims[1]);
+
+            //a file written to while loading may have been read truncated
+            if(file.length() == length && file.lastModified() == modified) {
+                thumbStore.put(path, thumb);
+            }
+        }
+
+        return thumb;
     }
 
     /**
-     * Retrieves the next video queue item for thumbnail generation.
+     * Retrieves the thumbnail of an image file for display, preferring the
+     *   directory thumbnail atlas.
+     * @param path the path of the image file
+     * @return the thumbnail, or null if the image could not be loaded
      */
-    private void getNextQItem() {
-        if(qIter.hasPrevious()) {
-            if(curQItem == null || curQItem.isHandled) {
-                curQItem = qIter.previous();
+    private PImage pageThumb(String path) {
+        PImage thumb = (atlas != null ? atlas.get(path) : null);
 
-                qIter.remove();
+        if(thumb == null) {
+            thumb = loadThumb(path);
 
-                movie = new Movie(parent, curQItem.name);
-                movie.play();
-            }
+            atlasDirty = true;
         }
 
-        else {
-            curQItem = null;
+        return thumb;
+    }
+
+    /**
+     * Retrieves an existing thumbnail of a video file.
+     * @param path the path of the video file
+     * @return the thumbnail, or null if the video must be queued
+     */
+    private PImage videoThumb(String path) {
+        PImage thumb = (atlas != null ? atlas.get(path) : null);
+
+        if(thumb == null) {
+            thumb = thumbStore.get(path);
+
+            atlasDirty |= thumb != null;
         }
+
+        return thumb;
+    }
+
+    /**
+     * Determines the thumbnail atlas file of a directory.
+     * @param dir the canonical path of the directory
+     * @return a Java File object
+     */
+    private File atlasFile(String dir) {
+        return new File(atlasDir, ThumbnailStore.hash(dir) + ".atlas");
+    }
+
+    /**
+     * Queues the thumbnails of the current directory to be written to its
+     *   atlas if any were generated since it was last written. Only the
+     *   names and thumbnails are copied here; the file is rewritten by the
+     *   atlas writer thread.
+     */
+    private void saveAtlas() {
+        if(atlasDirty && !isAudioMode) {
+            final ArrayList<String> paths = new ArrayList<String>();
+            final ArrayList<PImage> tiles = new ArrayList<PImage>();
+
+            ListIterator<String> nameIter = fileNames.listIterator(numDirs);
+            ListIterator<PImage> thumbIter = thumbs.listIterator(numDirs);
+            String name;
+            PImage thumb;
+
+            while(nameIter.hasNext()) {
+                name = nameIter.next();
+                thumb = thumbIter.next();
+
+                //files still being written are not persisted
+                if(watcher.isSettling(name)) {
+                    continue;
+                }
+
+                //null keeps the tile of a page not visited this time
+                paths.add(curDir + separator + name);
+                tiles.add(thumb);
+            }
+
+            if(atlas == null) {
+                atlas = new ThumbnailAtlas(atlasFile(curDir), thumbWidth,
+                    thumbHeight, debug);
+            }
+
+            final ThumbnailAtlas target = atlas;
+            final String dir = curDir;
+
+            atlasWriter.submit(new Runnable() {
+                public void run() {
+                    boolean saved = target.save(paths, tiles);
+
+                    if(debug) {
+                        Quickshow.println("thumbnail atlas saved for " + dir +
+                            ": " + saved);
+                    }
+                }
+            });
+        }
+
+        atlasDirty = false;
     }
 
     /**
@@ -398,6 +625,69 @@ public class FileBrowser {
         toggle(false);
     }
 
+    /**
+     * ControlP5 UI handler. Imports every media file in the current directory
+     *   and all of its subdirectories, regardless of the media type being
+     *   browsed, or cancels the import in progress.
+     */
+    private void importButton() {
+        if(importer.isBusy()) {
+            importer.cancel();
+
+            if(debug) {
+                Quickshow.println("import cancelled");
+            }
+
+            return;
+        }
+
+        selectedIndex.clear();
+
+        boolean started = importer.start(curDir,
+            new LibraryImporter.ItemFactory() {
+                public MediaItem create(String path, MediaType type) {
+                    return createItem(path, type);
+                }
+            }
+        );
+
+        if(debug) {
+            Quickshow.println("import " + curDir + ": " + started);
+        }
+
+        if(started) {
+            toggle(false);
+        }
+    }
+
+    /**
+     * Constructs the MediaItem of an imported file, generating its thumbnail
+     *   if necessary. Video thumbnails are generated in the background.
+     * @param path the path of the media file
+     * @param type the media type of the file
+     * @return a MediaItem object
+     */
+    private MediaItem createItem(String path, MediaType type) {
+        switch(type) {
+        case IMAGE:
+            return new ImageItem(parent, path, loadThumb(path));
+
+        case VIDEO:
+            PImage thumb = thumbStore.get(path);
+
+            //pool threads never wait on a pipeline; the MovieItem finds the
+            //thumbnail in the store once a video worker has generated it
+            if(thumb == null) {
+                videoThumbs.store(path);
+            }
+
+            return new MovieItem(parent, path, thumb);
+
+        default:
+            return new AudioItem(minim, path);
+        }
+    }
+
     /**
      * ControlP5 UI handler. Enters selected directory or loads selected files.
      */
@@ -430,7 +720,7 @@ public class FileBrowser {
 
         selectedIndex.clear();
 
-        if(!results.isEmpty()) {
+        if(!results.isEmpty() || ingest.isBusy()) {
             toggle(false);
         }
     }
@@ -439,24 +729,21 @@ public class FileBrowser {
      * Generates thumbnails when paginating through a directory if necessary.
      */
     private void updateThumbs(int displayIndex) {
+        applyPrefetched();
+
         if(displayIndex < fileNames.size()) {
             ListIterator<String> fileIter = fileNames
                 .listIterator(displayIndex);
 
             if(fileIter.hasNext()) {
                 String fullPath;
-                String[] fileNameParts;
                 PImage thumb;
-                PImage thumb1 = parent.loadImage("data" + separator + "img" +
-                    separator + "folderThumbNail.png");
-                PImage thumb2 = parent.loadImage("data" + separator + "img" +
-                    separator + "audioThumbNail.png");
-                int[] thumbDims = newImageDims(thumb1);
-
-                thumb1.resize(thumbDims[0], thumbDims[1]);
-                thumb2.resize(thumbDims[0], thumbDims[1]);
+                int[] thumbDims = newImageDims(assets.getImage(FOLDER_THUMB));
+                PImage thumb1 = assets.getImage(FOLDER_THUMB, thumbDims[0],
+                    thumbDims[1]);
+                PImage thumb2 = assets.getImage(AUDIO_THUMB, thumbDims[0],
+                    thumbDims[1]);
 
-                short j;
                 int i = displayIndex;
 
                 ListIterator<PImage> thumbIter = thumbs
@@ -474,39 +761,21 @@ public class FileBrowser {
                         thumb = thumb1;
 
                         //non-directory thumbnail
-                        if(!(new File(fullPath)).isDirectory()) {
+                        if(i >= numDirs) {
                             if(isAudioMode) {       //audio thumbnail
                                 thumb = thumb2;
                             }
 
+                            //image thumbnail; changed images are left to
+                            //the prefetcher
+                            else if(entryType(i) == MediaType.IMAGE) {
+                                thumb = (regenerating.contains(fileName) ?
+                                    null : pageThumb(fullPath));
+                            }
+
+                            //videos were queued when the directory was listed
                             else {
-                                fileNameParts = fileName.split("\\.");
-
-                                //image thumbnail
-                                for(j = 0; j < FileExtensions.IMG_EXT.length;
-                                    j++)
-                                {
-                                    if(
-                                        fileNameParts[fileNameParts.length-1].
-                                        equalsIgnoreCase(FileExtensions
-                                            .IMG_EXT[j])
-                                    ) {
-                                        thumb = parent.loadImage(fullPath);
-
-                                        thumbDims = newImageDims(thumb);
-                                        thumb.resize(thumbDims[0],
-                                            thumbDims[1]);
-
-                                        break;
-                                    }
-                                }
-
-                                //queue video for thumbnail generation
-                                if(j == FileExtensions.IMG_EXT.length) {
-                                    qIter.add(new QItem(i, fullPath));
-
-                                    thumb = null;
-                                }
+                                thumb = videoThumb(fullPath);
                             }
                         }
 
@@ -516,11 +785,119 @@ public class FileBrowser {
 
                     i++;
                 } while(fileIter.hasNext() && i < displayIndex + 20);
+            }
+        }
+
+        prefetchPages(displayIndex);
+    }
+
+    /**
+     * Queues the missing image thumbnails of a page and the pages before and
+     *   after it. Thumbnails queued for previous pages are cancelled.
+     * @param displayIndex the index of the first thumbnail of the page
+     */
+    private void prefetchPages(int displayIndex) {
+        prefetcher.cancelPages();
+
+        if(isAudioMode) {
+            return;
+        }
+
+        //thumbnails still missing from the shown page are those of changed
+        //images, then the next page is the most likely to be viewed
+        int[] pages = {displayIndex, displayIndex + 20, displayIndex - 20};
+
+        for(int page : pages) {
+            int start = Math.max(page, numDirs);
+            int end = Math.min(page + 20, numDirs + numImages);
+
+            if(page < 0 || start >= end) {
+                continue;
+            }
+
+            IntList indices = new IntList(20);
+            ArrayList<String> paths = new ArrayList<String>(20);
+
+            for(int i = start; i < end; i++) {
+                if(thumbs.get(i) == null) {
+                    indices.append(i);
+                    paths.add(curDir + separator + fileNames.get(i));
+                }
+            }
+
+            if(paths.size() > 0) {
+                prefetcher.prefetchPage(indices.array(),
+                    paths.toArray(new String[paths.size()]));
+            }
+        }
+    }
+
+    /**
+     * Queues the listings of the directories most likely to be opened from
+     *   the current directory: its parent, subdirectories visited before,
+     *   then its first subdirectories.
+     */
+    private void prefetchDirs() {
+        File parentDir = (new File(curDir)).getParentFile();
+
+        if(parentDir != null) {
+            prefetcher.prefetchDir(parentDir.getAbsolutePath(), false);
+        }
+
+        int count = 0;
 
-                getNextQItem();
+        for(int i = recentDirs.size() - 1; i >= 0 && count < PREFETCH_DIRS;
+            i--)
+        {
+            File dir = new File(recentDirs.get(i));
+
+            if(curDir.equals(dir.getParent())) {
+                prefetcher.prefetchDir(dir.getPath(), !isAudioMode);
+
+                count++;
             }
         }
 
+        String path;
+
+        for(int i = 0; i < numDirs && count < PREFETCH_DIRS; i++) {
+            path = curDir + separator + fileNames.get(i);
+
+            if(!recentDirs.contains(path)) {
+                prefetcher.prefetchDir(path, !isAudioMode);
+
+                count++;
+            }
+        }
+    }
+
+    /**
+     * Places finished prefetched thumbnails into the current listing.
+     */
+    private void applyPrefetched() {
+        ThumbnailPrefetcher.Result result;
+        int index;
+
+        while((result = prefetcher.poll()) != null) {
+            //entries may have moved since the thumbnail was requested
+            index = result.index;
+            String name = new File(result.path).getName();
+
+            if(index >= fileNames.size() ||
+                !fileNames.get(index).equals(name))
+            {
+                index = fileNames.indexOf(name);
+            }
+
+            if(index >= 0 && thumbs.get(index) == null &&
+                result.thumb != null)
+            {
+                thumbs.set(index, result.thumb);
+                regenerating.remove(name);
+
+                atlasDirty = true;
+            }
+        }
     }
 
     /**
@@ -612,6 +989,8 @@ public class FileBrowser {
      * @param e the initiating ControlEvent
      */
     private void mediaTypeList(ControlEvent e) {
+        saveAtlas();
+
         isAudioMode = e.getValue() != 0;
 
         changeDir(curDir);
@@ -625,32 +1004,64 @@ public class FileBrowser {
             dblClick = false;
         }
 
-        if(movie != null) {
-            if(movie.available()) {
-                movie.read();
+        if(scan != null && scan.isDone()) {
+            DirectoryScanner.Listing listing = null;
+
+            try {
+                listing = scan.get();
+            }
+
+            catch(InterruptedException | ExecutionException e) {
+                if(debug) {
+                    e.printStackTrace();
+                }
+            }
+
+            scan = null;
+
+            if(listing != null && listing.dir.equals(curDir)) {
+                showListing(listing);
+            }
+        }
+
+        if(scan == null) {
+            applyChanges(watcher.poll());
+        }
 
-                int[] thumbDims = newImageDims(movie);
+        //the import button cancels an import in progress
+        if(importing != importer.isBusy()) {
+            importing = !importing;
 
-                PImage thumb = movie.get();
+            controllers[8].setCaptionLabel(importing ? "Cancel" : "Import");
+        }
 
-                movie.stop();
-                movie = null;
+        applyPrefetched();
 
-                thumb.resize(thumbDims[0], thumbDims[1]);
+        VideoThumbnailService.Result video;
+        int index;
+        while((video = videoThumbs.poll()) != null) {
+            if(video.index >= 0) {
+                //entries may have moved since the thumbnail was requested
+                index = video.index;
+                String name = new File(video.path).getName();
 
-                if(curQItem.index >= 0) {
-                    thumbs.set(curQItem.index, thumb);
+                if(index >= fileNames.size() ||
+                    !fileNames.get(index).equals(name))
+                {
+                    index = fileNames.indexOf(name);
                 }
 
-                else {
-                    results.add(new MovieItem(parent, curQItem.name, thumb));
+                if(index >= 0) {
+                    thumbs.set(index, video.thumb);
 
-                    toggle(false);
+                    atlasDirty |= video.thumb != null;
                 }
+            }
 
-                curQItem.isHandled = true;
+            else {
+                submitVideo(video.path, video.thumb);
 
-                getNextQItem();
+                toggle(false);
             }
         }
 
@@ -727,16 +1138,17 @@ public class FileBrowser {
     }
 
     /**
-     * Determines the thumbnail dimensions of an image.
+     * Determines the thumbnail dimensions of an image. The result always fits
+     *   within a thumbWidth by thumbHeight tile.
      * @param image the image to scale
      * @return an integer array containing the new image dimensions
      */
-    private int[] newImageDims(PImage image) {
+    static int[] newImageDims(PImage image) {
         int[] results = new int[2];
 
         float aspect = 1f * image.width / image.height;
 
-        if(aspect > 1f) {
+        if(aspect > 1f * thumbWidth / thumbHeight) {
             results[0] = thumbWidth;
             results[1] = (int)(results[0] / aspect);
         }
@@ -754,9 +1166,16 @@ public class FileBrowser {
      * @param newDir the new directory path
      */
     private void changeDir(String newDir) {
+        saveAtlas();
+
+        //thumbnail indices of the old listing no longer apply
+        videoThumbs.cancelAll();
+        prefetcher.cancelPages();
+        prefetcher.cancelDirs();
+
         File file = new File(newDir);
 
-        if(file.exists()) {
+        if(file.isDirectory()) {
             try {
                 curDir = file.getCanonicalPath();
             }
@@ -767,175 +1186,397 @@ public class FileBrowser {
             thumbs.clear();
             fileNames.clear();
             selectedIndex.clear();
+            regenerating.clear();
 
             curDisplayIndex = 0;
+            numDirs = numImages = 0;
+            atlas = null;
 
             if(debug) {
                 Quickshow.println("cd " + curDir + "\nls");
             }
 
-            ArrayList<File> files =
-                new ArrayList<File>(java.util.Arrays.asList(file.listFiles()));
-            ListIterator<File> fileIter = files.listIterator();
+            //changes made during the scan are queued until it finishes
+            watcher.watch(curDir);
 
-            String fileName, fullPath;
-            String[] fileNameParts;
-            short i, j;
-            int[] thumbDims;
-
-            PImage thumb = parent.loadImage("data" + separator + "img" + 
-                separator + "folderThumbNail.png");
-            thumb.resize(thumbWidth, thumbHeight);
+            //the listing is shown by draw() once the scan finishes
+            if(scan != null) {
+                scan.cancel(true);
+                scan = null;
+            }
 
-            pathField.setText(file.getAbsolutePath());
+            pageLabel.setCaptionLabel("");
 
-            //directories listed first
-            j = 0;
-            while(fileIter.hasNext()) {
-                file = fileIter.next();
+            DirectoryScanner.Listing listing = prefetcher.getListing(curDir);
 
-                if(file.isDirectory()) {
-                    fileNames.add(file.getName());
+            if(listing != null) {
+                showListing(listing);
+            }
 
-                    if(j < 20) {
-                        thumbs.add(thumb);
-                        j++;
-                    }
+            else {
+                scan = scanner.submit(curDir);
+            }
 
-                    else {
-                        thumbs.add(null);
-                    }
+            pathField.setText(curDir);
 
-                    fileIter.remove();
+            if(dblClick) {
+                if(System.currentTimeMillis() - clickTime > 500) {
+                    dblClick = false;
                 }
             }
+        }
+    }
 
-            //list audio files
-            if(isAudioMode) {
-                thumb = parent.loadImage("data" + separator + "img" +
-                    separator + "audioThumbNail.png");
-                thumb.resize(thumbWidth, thumbHeight);
+    /**
+     * Fills the FileBrowser with a finished directory listing.
+     * @param listing the Listing of the current directory
+     */
+    private void showListing(DirectoryScanner.Listing listing) {
+        PImage thumb = assets.getImage(FOLDER_THUMB, thumbWidth, thumbHeight);
 
-                fileIter = files.listIterator();
-                while(fileIter.hasNext()) {
-                    fileName = fileIter.next().getName();
-                    fileNameParts = fileName.split("\\.");
+        String fullPath;
+        short j = 0;
 
-                    if(debug) {
-                        Quickshow.println(curDir + separator + fileName);
-                    }
+        //directories listed first
+        for(String fileName : listing.dirs) {
+            fileNames.add(fileName);
 
-                    for(i = 0; i < FileExtensions.AUDIO_EXT.length; i++) {
-                        if(fileNameParts[fileNameParts.length-1]
-                            .equalsIgnoreCase(FileExtensions.AUDIO_EXT[i]))
-                        {
-                            fileNames.add(fileName);
+            if(j < 20) {
+                thumbs.add(thumb);
+                j++;
+            }
 
-                            if(j < 20) {
-                                thumbs.add(thumb);
+            else {
+                thumbs.add(null);
+            }
+        }
 
-                                j++;
-                            }
+        numDirs = fileNames.size();
+        numImages = (isAudioMode ? listing.audio : listing.images).size();
 
-                            else {
-                                thumbs.add(null);
-                            }
-                        }
-                    }
+        //list audio files
+        if(isAudioMode) {
+            thumb = assets.getImage(AUDIO_THUMB, thumbWidth, thumbHeight);
+
+            for(String fileName : listing.audio) {
+                if(debug) {
+                    Quickshow.println(curDir + separator + fileName);
+                }
+
+                fileNames.add(fileName);
+
+                if(j < 20) {
+                    thumbs.add(thumb);
+
+                    j++;
+                }
+
+                else {
+                    thumbs.add(null);
                 }
             }
+        }
 
-            else {
-                //list images
-                fileIter = files.listIterator();
-                while(fileIter.hasNext()) {
-                    fileName = fileIter.next().getName();
-                    fileNameParts = fileName.split("\\.");
-                    fullPath = curDir + separator + fileName;
+        else {
+            atlas = new ThumbnailAtlas(atlasFile(curDir), thumbWidth,
+                thumbHeight, debug);
 
-                    if(debug) {
-                        Quickshow.println(fullPath);
+            //list images
+            for(String fileName : listing.images) {
+                fullPath = curDir + separator + fileName;
+
+                if(debug) {
+                    Quickshow.println(fullPath);
+                }
+
+                //create image thumbnail
+                if(j < 20) {
+                    thumb = pageThumb(fullPath);
+                    thumbs.add(thumb);
+
+                    if(debug && thumb != null) {
+                        Quickshow.println("" + thumb.width + ' ' +
+                            thumb.height);
                     }
 
-                    //create image thumbnail
-                    for(i = 0; i < FileExtensions.IMG_EXT.length; i++) {
-                        if(fileNameParts[fileNameParts.length-1]
-                            .equalsIgnoreCase(FileExtensions.IMG_EXT[i]))
-                        {
-                            if(j < 20) {
-                                thumb = parent.loadImage(fullPath);
+                    j++;
+                }
 
-                                thumbDims = newImageDims(thumb);
-                                thumb.resize(thumbDims[0], thumbDims[1]);
-                                thumbs.add(thumb);
+                else {
+                    thumbs.add(null);
+                }
 
-                                if(debug) {
-                                    Quickshow.println("" + thumbDims[0] + ' ' +
-                                        thumbDims[1]);
-                                }
+                fileNames.add(fileName);
+            }
 
-                                j++;
-                            }
+            //list videos
+            for(String fileName : listing.videos) {
+                fullPath = curDir + separator + fileName;
 
-                            else {
-                                thumbs.add(null);
-                            }
+                //queue video for thumbnail generation
+                thumb = videoThumb(fullPath);
 
-                            fileNames.add(fileName);
+                if(thumb == null) {
+                    videoThumbs.submit(thumbs.size(), fullPath);
+                }
 
-                            fileIter.remove();
+                thumbs.add(thumb);
 
-                            break;
-                        }
-                    }
+                if(j < 20) {
+                    j++;
                 }
 
-                //list videos
-                fileIter = files.listIterator();
-                while(fileIter.hasNext()) {
-                    fileName = fileIter.next().getName();
-                    fileNameParts = fileName.split("\\.");
-                    fullPath = curDir + separator + fileName;
-
-                    //queue video for thumbnail generation
-                    for(i = 0; i < FileExtensions.VIDEO_EXT.length; i++) {
-                        if(fileNameParts[fileNameParts.length-1]
-                            .equalsIgnoreCase(FileExtensions.VIDEO_EXT[i]))
-                        {
-                            qIter.add(new QItem(thumbs.size(), fullPath));
+                fileNames.add(fileName);
+            }
+        }
 
-                            thumbs.add(null);
+        pageLabel.setCaptionLabel("\n\n\n1\n\nof\n\n" +
+            ((int)Math.ceil(fileNames.size()/20.)));
 
-                            if(j < 20) {
-                                j++;
-                            }
+        recentDirs.remove(curDir);
+        recentDirs.add(curDir);
 
-                            fileNames.add(fileName);
+        if(recentDirs.size() > MAX_RECENT_DIRS) {
+            recentDirs.remove(0);
+        }
 
-                            break;
-                        }
-                    }
+        prefetchPages(0);
+        prefetchDirs();
+
+        if(debug) {
+            Quickshow.println("#valid items in directory: " +
+                fileNames.size() + "\nscan time: " + listing.scanTime +
+                " ms\nthumbnail store hits: " + thumbStore.getHits() +
+                ", misses: " + thumbStore.getMisses() +
+                "\nprefetched listings used: " +
+                prefetcher.getListingHits() + ", scanned: " +
+                prefetcher.getListingMisses());
+        }
+    }
+
+    /**
+     * Updates the current listing with changes to the current directory,
+     *   instead of scanning the whole directory again.
+     * @param changes the changes reported by the DirectoryWatcher
+     */
+    private void applyChanges(ArrayList<DirectoryWatcher.Change> changes) {
+        boolean changed = false;
+
+        for(DirectoryWatcher.Change change : changes) {
+            //events were lost, so the listing can no longer be trusted
+            if(change.name == null) {
+                if(debug) {
+                    Quickshow.println("watch overflow, rescanning " + curDir);
                 }
+
+                changeDir(curDir);
+
+                return;
             }
 
-            pageLabel.setCaptionLabel("\n\n\n1\n\nof\n\n" +
-                ((int)Math.ceil(fileNames.size()/20.)));
+            if(debug) {
+                Quickshow.println(change.kind.name() + ' ' + change.name);
+            }
 
-            pathField.setText(curDir);
+            //the file's atlas key must be read again
+            if(atlas != null) {
+                atlas.invalidate(curDir + separator + change.name);
+            }
 
-            if(dblClick) {
-                if(System.currentTimeMillis() - clickTime > 500) {
-                    dblClick = false;
+            if(change.kind == StandardWatchEventKinds.ENTRY_DELETE) {
+                changed |= removeEntry(change.name);
+            }
+
+            else {
+                changed |= addEntry(change.name);
+            }
+        }
+
+        if(changed) {
+            if(curDisplayIndex >= fileNames.size() && curDisplayIndex > 0) {
+                curDisplayIndex = ((fileNames.size() - 1) / 20) * 20;
+            }
+
+            updateThumbs(curDisplayIndex);
+
+            int lastPage = (int)(Math.ceil(fileNames.size()/20.));
+
+            pageLabel.setCaptionLabel("\n\n\n" + ((curDisplayIndex/20) + 1) +
+                "\n\nof\n\n" + lastPage);
+        }
+    }
+
+    /**
+     * Removes a deleted entry from the current listing.
+     * @param name the name of the deleted entry
+     * @return true if the entry was listed
+     */
+    private boolean removeEntry(String name) {
+        int index = fileNames.indexOf(name);
+
+        if(index < 0) {
+            return false;
+        }
+
+        fileNames.remove(index);
+        thumbs.remove(index);
+        regenerating.remove(name);
+
+        if(index < numDirs) {
+            numDirs--;
+        }
+
+        else if(index < numDirs + numImages) {
+            numImages--;
+        }
+
+        //selections after the entry move up by one
+        for(int i = selectedIndex.size() - 1; i >= 0; i--) {
+            if(selectedIndex.get(i) == index) {
+                selectedIndex.remove(i);
+            }
+
+            else if(selectedIndex.get(i) > index) {
+                selectedIndex.sub(i, 1);
+            }
+        }
+
+        atlasDirty = true;
+
+        return true;
+    }
+
+    /**
+     * Determines the media type of an entry of the current listing from its
+     *   position, since entries are grouped by type when they are listed.
+     * @param index the index of the entry
+     * @return a MediaType, or null for a directory
+     */
+    private MediaType entryType(int index) {
+        if(index < numDirs) {
+            return null;
+        }
+
+        if(isAudioMode) {
+            return MediaType.AUDIO;
+        }
+
+        return (index < numDirs + numImages ? MediaType.IMAGE :
+            MediaType.VIDEO);
+    }
+
+    /**
+     * Inserts a created entry into the current listing at its sorted
+     *   position, or refreshes the thumbnail of a modified one.
+     * @param name the name of the created or modified entry
+     * @return true if the listing changed
+     */
+    private boolean addEntry(String name) {
+        String fullPath = curDir + separator + name;
+        File file = new File(fullPath);
+
+        //entry already deleted again
+        if(!file.exists()) {
+            return false;
+        }
+
+        int start, end;
+        MediaType type = null;
+
+        if(file.isDirectory()) {
+            start = 0;
+            end = numDirs;
+        }
+
+        //entries already listed keep the type they were scanned with
+        else {
+            int index = fileNames.indexOf(name);
+
+            type = (index >= 0 ? entryType(index) :
+                MediaType.classify(fullPath));
+
+            if(type == null || (type == MediaType.AUDIO) != isAudioMode) {
+                return false;
+            }
+
+            start = numDirs;
+            end = numDirs + numImages;
+
+            if(type == MediaType.VIDEO) {
+                start = end;
+                end = fileNames.size();
+            }
+        }
+
+        int pos = Collections.binarySearch(fileNames.subList(start, end),
+            name, String.CASE_INSENSITIVE_ORDER);
+
+        //modified entry
+        if(pos >= 0) {
+            if(type == null || type == MediaType.AUDIO) {
+                return false;
+            }
+
+            pos += start;
+
+            //stored thumbnails of the old contents no longer match
+            PImage thumb = null;
+
+            if(type == MediaType.VIDEO) {
+                thumb = videoThumb(fullPath);
+
+                if(thumb == null) {
+                    videoThumbs.submit(pos, fullPath);
                 }
             }
 
-            if(debug) {
-                Quickshow.println("#valid items in directory: " +
-                    fileNames.size());
+            else {
+                regenerating.add(name);
             }
+
+            thumbs.set(pos, thumb);
+            atlasDirty = true;
+
+            return true;
         }
 
-        getNextQItem();
+        pos = start - pos - 1;
+
+        PImage thumb = null;
+
+        if(type == MediaType.VIDEO) {
+            thumb = videoThumb(fullPath);
+
+            if(thumb == null) {
+                videoThumbs.submit(pos, fullPath);
+            }
+        }
+
+        else if(type == MediaType.IMAGE) {
+            regenerating.add(name);
+        }
+
+        fileNames.add(pos, name);
+        thumbs.add(pos, thumb);
+
+        if(type == null) {
+            numDirs++;
+        }
+
+        else if(type != MediaType.VIDEO) {
+            numImages++;
+        }
+
+        //selections after the entry move down by one
+        for(int i = 0; i < selectedIndex.size(); i++) {
+            if(selectedIndex.get(i) >= pos) {
+                selectedIndex.add(i, 1);
+            }
+        }
+
+        atlasDirty = true;
+
+        return true;
     }
 
     /**
@@ -951,8 +1592,7 @@ public class FileBrowser {
                 file = new File(curDir + separator + fileName);
 
                 if(file.isFile()) {
-                    results.add(new AudioItem(minim,
-                        curDir + separator + fileNames.get(index)));
+                    submitAudio(curDir + separator + fileName);
                 }
             }
         }
@@ -962,9 +1602,7 @@ public class FileBrowser {
      * Loads the selected visual media files.
      */
     private void loadVisual() {
-        String[] fileNameParts;
         String fileName;
-        short i;
         File file;
 
         for(Integer index : selectedIndex) {
@@ -973,39 +1611,21 @@ public class FileBrowser {
                 file = new File(curDir + separator + fileName);
 
                 if(file.isFile()) {
-                    fileNameParts = fileName.split("\\.");
-
                     //file is image
-                    for(i = 0; i < FileExtensions.IMG_EXT.length; i++) {
-                        if(fileNameParts[fileNameParts.length-1]
-                            .equalsIgnoreCase(FileExtensions.IMG_EXT[i]))
-                        {
-                            results.add(
-                                new ImageItem(
-                                    parent,
-                                    curDir + separator + fileName,
-                                    thumbs.get(index)
-                                )
-                            );
-
-                            break;
-                        }
+                    if(entryType(index) == MediaType.IMAGE) {
+                        submitImage(curDir + separator + fileName,
+                            thumbs.get(index));
                     }
 
                     //file is video
-                    if(i == FileExtensions.IMG_EXT.length) {
+                    else {
                         if(debug) {
                             Quickshow
                                 .println("Adding video to results arraylist");
                         }
 
-                        results.add(
-                            new MovieItem(
-                                parent,
-                                curDir + separator + fileName,
-                                thumbs.get(index)
-                            )
-                        );
+                        submitVideo(curDir + separator + fileName,
+                            thumbs.get(index));
                     }
                 }
             }
@@ -1023,23 +1643,17 @@ public class FileBrowser {
                 file = new File(curDir + separator + fileName);
 
                 if(file.isFile()) {
-                    results.add(new AudioItem(minim, file.getAbsolutePath()));
+                    submitAudio(file.getAbsolutePath());
                 }
             }
         }
 
         else {
-            //ensure all thumbnails actually loaded
-            for(int j = 0; j < fileNames.size(); j += 20) {
-                updateThumbs(j);
-            }
-
+            //missing image thumbnails are generated by the ingest workers
             ListIterator<String> fileNameIter = fileNames.listIterator();
 
             if(fileNameIter.hasNext()) {
-                String[] fileNameParts;
                 String fileName;
-                short i;
 
                 ListIterator<PImage> thumbIter = thumbs.listIterator();
                 PImage thumb;
@@ -1051,34 +1665,23 @@ public class FileBrowser {
                     file = new File(curDir + separator + fileName);
 
                     if(file.isFile()) {
-                        fileNameParts = fileName.split("\\.");
+                        //unvisited pages may still have atlas tiles
+                        if(thumb == null && atlas != null) {
+                            thumb = atlas.get(curDir + separator + fileName);
+                        }
 
                         //file is image
-                        for(i = 0; i < FileExtensions.IMG_EXT.length; i++) {
-                            if(fileNameParts[fileNameParts.length-1]
-                                .equalsIgnoreCase(FileExtensions.IMG_EXT[i]))
-                            {
-                                results.add(
-                                    new ImageItem(
-                                        parent,
-                                        curDir + separator + fileName,
-                                        thumb
-                                    )
-                                );
-
-                                break;
-                            }
+                        if(entryType(fileNameIter.previousIndex()) ==
+                            MediaType.IMAGE)
+                        {
+                            submitImage(curDir + separator + fileName,
+                                thumb);
                         }
 
                         //file is video
-                        if(i == FileExtensions.IMG_EXT.length) {
-                            results.add(
-                                new MovieItem(
-                                    parent,
-                                    curDir + separator + fileName,
-                                    thumb
-                                )
-                            );
+                        else {
+                            submitVideo(curDir + separator + fileName,
+                                thumb);
                         }
                     }
                 } while(fileNameIter.hasNext());
@@ -1287,6 +1890,10 @@ public class FileBrowser {
      * @param visible whether the FileBrowser should be visible
      */
     public void toggle(boolean visible) {
+        if(!visible) {
+            saveAtlas();
+        }
+
         group.setVisible(visible);
     }
 
@@ -1300,10 +1907,14 @@ public class FileBrowser {
 
     /**
      * Retrieves the loaded media items. The loaded items are then cleared from
-     *   the FileBrowser.
+     *   the FileBrowser. Items still being loaded in the background are
+     *   delivered by later calls, at most BATCH_SIZE at a time.
      * @return an ArrayList containing the selected MediaItems
      */
     public ArrayList<MediaItem> getResults() {
+        int count = ingest.drainTo(results, BATCH_SIZE);
+        importer.drainTo(results, BATCH_SIZE - count);
+
         @SuppressWarnings("unchecked")
         ArrayList<MediaItem> tmp = (ArrayList<MediaItem>) results.clone();
 
@@ -1314,39 +1925,45 @@ public class FileBrowser {
         return tmp;
     }
 
+    /**
+     * Stops the background threads of the FileBrowser.
+     */
+    public void shutdown() {
+        ingest.shutdown();
+        videoThumbs.shutdown();
+        scanner.shutdown();
+        importer.shutdown();
+        watcher.close();
+        prefetcher.shutdown();
+
+        //queued atlases are still written
+        atlasWriter.shutdown();
+    }
+
     /**
      * Checks if MediaItems have been loaded.
      * @return true if MediaItems have been loaded
      */
     public boolean isReady() {
-        return !results.isEmpty();
+        return !results.isEmpty() || ingest.hasFinished() ||
+            importer.hasFinished();
     }
 
     /**
-     * Checks the file type being scanned for.
-     * @return true if the FIleBrowser is scanning for audio files
+     * Retrieves the progress of any background loading.
+     * @return the progress string, or an empty string if idle
      */
-    public boolean isAudioMode() {
-        return isAudioMode;
+    public String getLoadStatus() {
+        String status = importer.getStatus();
+
+        return (status.isEmpty() ? ingest.getStatus() : status);
     }
 
     /**
-     * Private class for queueing video files for thumbnail generation.
-     * @author Kay Choi
+     * Checks the file type being scanned for.
+     * @return true if the FIleBrowser is scanning for audio files
      */
-    private class QItem {
-        private int index;
-        private String name;
-        private boolean isHandled = false;
-
-        /**
-         * Class constructor.
-         * @param i the thumbnail index
-         * @param name filename to load
-         */
-        private QItem(int i, String name) {
-            this.index = i;
-            this.name = name;
-        }
+    public boolean isAudioMode() {
+        return isAudioMode;
     }
 }
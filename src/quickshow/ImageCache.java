@@ -0,0 +1,212 @@
+/**
+ * @file ImageCache.java
+ * @description A least recently used cache for display resolution images,
+ *   bounded by the total size of the cached pixel data.
+ */
+
+package quickshow;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import processing.core.PApplet;
+import processing.core.PImage;
+
+public class ImageCache {
+    private PApplet parent;
+
+    private boolean debug;
+
+    //iteration order runs from least to most recently used
+    private LinkedHashMap<String, Entry> images;
+
+    private long budget;
+    private long usedBytes = 0;
+
+    private int hits = 0, misses = 0;
+
+    /**
+     * Class constructor.
+     * @param parent the PApplet used to decode images
+     * @param budget the maximum number of bytes of pixel data to keep
+     * @param debug whether debug statements are enabled
+     */
+    public ImageCache(PApplet parent, long budget, boolean debug) {
+        this.parent = parent;
+        this.budget = budget;
+        this.debug = debug;
+
+        images = new LinkedHashMap<String, Entry>(16, 0.75f, true);
+    }
+
+    /**
+     * Retrieves an image, decoding it if it is not already cached. Images
+     *   are decoded at the largest size that fits the sketch window.
+     * @param fileName the file name of the image
+     * @return a PImage object, or null if the image could not be loaded
+     */
+    public PImage get(String fileName) {
+        synchronized(this) {
+            Entry entry = images.get(fileName);
+
+            if(entry != null) {
+                hits++;
+
+                return entry.image;
+            }
+
+            misses++;
+        }
+
+        //decode outside the lock so other images remain available
+        PImage image = ImageDecoder.decode(fileName, parent.width,
+            parent.height);
+
+        //formats without an ImageIO reader
+        if(image == null) {
+            image = parent.loadImage(fileName);
+
+            if(image != null) {
+                int[] dims = ImageDecoder.fitDims(image.width, image.height,
+                    parent.width, parent.height);
+
+                if(dims[0] != image.width || dims[1] != image.height) {
+                    image.resize(dims[0], dims[1]);
+                }
+            }
+        }
+
+        if(image != null) {
+            put(fileName, image);
+        }
+
+        return image;
+    }
+
+    /**
+     * Retrieves an image fitted to a display size. Copies scaled to a size
+     *   other than the decoded one are cached alongside the decoded image,
+     *   which is never modified.
+     * @param fileName the file name of the image
+     * @param width the maximum width of the frame
+     * @param height the maximum height of the frame
+     * @return a PImage object, or null if the image could not be loaded
+     */
+    public PImage getScaled(String fileName, int width, int height) {
+        PImage image = get(fileName);
+
+        if(image == null) {
+            return null;
+        }
+
+        int[] dims = ImageDecoder.fitDims(image.width, image.height, width,
+            height);
+
+        if(dims[0] == image.width && dims[1] == image.height) {
+            return image;
+        }
+
+        String key = fileName + '\n' + dims[0] + 'x' + dims[1];
+
+        synchronized(this) {
+            Entry entry = images.get(key);
+
+            if(entry != null) {
+                hits++;
+
+                return entry.image;
+            }
+
+            misses++;
+        }
+
+        PImage scaled = image.get();
+        scaled.resize(dims[0], dims[1]);
+
+        put(key, scaled);
+
+        return scaled;
+    }
+
+    /**
+     * Adds an already decoded image to the cache.
+     * @param fileName the file name of the image
+     * @param image the decoded image
+     */
+    public synchronized void put(String fileName, PImage image) {
+        Entry entry = new Entry(image);
+        Entry old = images.put(fileName, entry);
+
+        if(old != null) {
+            usedBytes -= old.bytes;
+        }
+
+        usedBytes += entry.bytes;
+
+        evict();
+    }
+
+    /**
+     * Retrieves the size of the cached pixel data.
+     * @return the size in bytes
+     */
+    public synchronized long getUsedBytes() {
+        return usedBytes;
+    }
+
+    /**
+     * Retrieves the number of cache hits.
+     * @return integer
+     */
+    public synchronized int getHits() {
+        return hits;
+    }
+
+    /**
+     * Retrieves the number of cache misses.
+     * @return integer
+     */
+    public synchronized int getMisses() {
+        return misses;
+    }
+
+    /**
+     * Removes least recently used images until the cache fits its budget.
+     *   The most recently used image is always kept.
+     */
+    private void evict() {
+        Iterator<Map.Entry<String, Entry>> iter = images.entrySet()
+            .iterator();
+        Map.Entry<String, Entry> eldest;
+
+        while(usedBytes > budget && images.size() > 1) {
+            eldest = iter.next();
+
+            usedBytes -= eldest.getValue().bytes;
+
+            if(debug) {
+                PApplet.println("image cache evict: " + eldest.getKey());
+            }
+
+            iter.remove();
+        }
+    }
+
+    /**
+     * Private class pairing a cached image with its size at insertion.
+     */
+    private class Entry {
+        private PImage image;
+        private long bytes;
+
+        /**
+         * Class constructor.
+         * @param image the cached image
+         */
+        private Entry(PImage image) {
+            this.image = image;
+            bytes = 4L * image.width * image.height;
+        }
+    }
+}
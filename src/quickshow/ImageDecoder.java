@@ -0,0 +1,210 @@
+/**
+ * @file ImageDecoder.java
+ * @description Decodes image files directly to a bounded display size.
+ */
+
+package quickshow;
+
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+
+import processing.core.PConstants;
+import processing.core.PImage;
+
+public final class ImageDecoder {
+    /**
+     * Class constructor. Not used.
+     */
+    private ImageDecoder() {}
+
+    /**
+     * Decodes an image so that it fits within the given bounds. Whole source
+     *   pixels are skipped while decoding, then a bicubic pass produces the
+     *   exact size. Images already within the bounds are not scaled.
+     * @param fileName the file name of the image
+     * @param maxWidth the maximum width of the result
+     * @param maxHeight the maximum height of the result
+     * @return a PImage object, or null if no ImageIO reader could decode the
+     *   file
+     */
+    public static PImage decode(String fileName, int maxWidth,
+        int maxHeight)
+    {
+        BufferedImage image = read(fileName, maxWidth, maxHeight);
+
+        if(image == null) {
+            return null;
+        }
+
+        int[] dims = fitDims(image.getWidth(), image.getHeight(), maxWidth,
+            maxHeight);
+
+        if(dims[0] != image.getWidth() || dims[1] != image.getHeight()) {
+            image = scale(image, dims[0], dims[1]);
+        }
+
+        return toPImage(image);
+    }
+
+    /**
+     * Decodes an image using only source subsampling. The result is the
+     *   smallest whole-pixel reduction that still covers the fitted size,
+     *   which is suitable for a final resize to thumbnail dimensions.
+     * @param fileName the file name of the image
+     * @param maxWidth the width the result must cover
+     * @param maxHeight the height the result must cover
+     * @return a PImage object, or null if no ImageIO reader could decode the
+     *   file
+     */
+    public static PImage decodeSubsampled(String fileName, int maxWidth,
+        int maxHeight)
+    {
+        BufferedImage image = read(fileName, maxWidth, maxHeight);
+
+        return (image == null ? null : toPImage(image));
+    }
+
+    /**
+     * Determines the largest dimensions that fit within the given bounds
+     *   while keeping the aspect ratio. Images are never enlarged.
+     * @param width the source width
+     * @param height the source height
+     * @param maxWidth the maximum width
+     * @param maxHeight the maximum height
+     * @return an integer array containing the new dimensions
+     */
+    public static int[] fitDims(int width, int height, int maxWidth,
+        int maxHeight)
+    {
+        int[] result = {width, height};
+
+        if(width > maxWidth || height > maxHeight) {
+            float aspect = 1f * width / height;
+
+            result[0] = (width > maxWidth ? maxWidth : width);
+            result[1] = (int)(result[0] / aspect);
+
+            if(result[1] > maxHeight) {
+                result[1] = maxHeight;
+                result[0] = (int)(result[1] * aspect);
+            }
+
+            result[0] = Math.max(result[0], 1);
+            result[1] = Math.max(result[1], 1);
+        }
+
+        return result;
+    }
+
+    /**
+     * Reads an image using source subsampling, leaving it at least as large
+     *   as the fitted dimensions.
+     * @param fileName the file name of the image
+     * @param maxWidth the maximum width of the final image
+     * @param maxHeight the maximum height of the final image
+     * @return a BufferedImage, or null if the file could not be decoded
+     */
+    static BufferedImage read(String fileName, int maxWidth, int maxHeight) {
+        ImageInputStream in = null;
+        ImageReader reader = null;
+
+        try {
+            in = ImageIO.createImageInputStream(new File(fileName));
+
+            if(in == null) {
+                return null;
+            }
+
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(in);
+
+            if(!readers.hasNext()) {
+                return null;
+            }
+
+            reader = readers.next();
+            reader.setInput(in, true, true);
+
+            int width = reader.getWidth(0);
+            int height = reader.getHeight(0);
+            int[] dims = fitDims(width, height, maxWidth, maxHeight);
+
+            ImageReadParam param = reader.getDefaultReadParam();
+
+            int step = Math.min(width / dims[0], height / dims[1]);
+            if(step > 1) {
+                param.setSourceSubsampling(step, step, 0, 0);
+            }
+
+            return reader.read(0, param);
+        }
+
+        catch(IOException | RuntimeException e) {
+            return null;
+        }
+
+        finally {
+            if(reader != null) {
+                reader.dispose();
+            }
+
+            if(in != null) {
+                try {
+                    in.close();
+                }
+
+                catch(IOException e) {}
+            }
+        }
+    }
+
+    /**
+     * Scales an image with bicubic interpolation.
+     * @param image the image to scale
+     * @param width the new width
+     * @param height the new height
+     * @return the scaled image
+     */
+    static BufferedImage scale(BufferedImage image, int width, int height) {
+        boolean alpha = image.getColorModel().hasAlpha();
+
+        BufferedImage result = new BufferedImage(width, height,
+            alpha ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB);
+
+        Graphics2D g = result.createGraphics();
+        g.setRenderingHint(RenderingHints.KEY_INTERPOLATION,
+            RenderingHints.VALUE_INTERPOLATION_BICUBIC);
+        g.setRenderingHint(RenderingHints.KEY_RENDERING,
+            RenderingHints.VALUE_RENDER_QUALITY);
+        g.drawImage(image, 0, 0, width, height, null);
+        g.dispose();
+
+        return result;
+    }
+
+    /**
+     * Copies a BufferedImage into a new PImage.
+     * @param image the image to copy
+     * @return a PImage object
+     */
+    static PImage toPImage(BufferedImage image) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+
+        PImage result = new PImage(width, height,
+            image.getColorModel().hasAlpha() ? PConstants.ARGB :
+            PConstants.RGB);
+
+        image.getRGB(0, 0, width, height, result.pixels, 0, width);
+
+        return result;
+    }
+}
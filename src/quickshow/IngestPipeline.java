@@ -0,0 +1,218 @@
+/**
+ * @file IngestPipeline.java
+ * @description Constructs MediaItems on a bounded pool of background worker
+ *   threads and hands the finished items back to the animation thread in
+ *   batches, in the order they finish.
+ */
+
+package quickshow;
+
+import java.util.ArrayList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+
+import quickshow.datatypes.MediaItem;
+
+public class IngestPipeline {
+    private boolean debug;
+
+    private ExecutorService workers;
+    private CompletionService<MediaItem> completion;
+
+    //finished jobs in the order they finished
+    private LinkedBlockingQueue<Future<MediaItem>> finished;
+
+    //jobs submitted but not yet drained; only touched by the animation thread
+    private int pending = 0;
+
+    //sequence number of the next job, kept across sessions
+    private int nextSequence = 1;
+
+    private int submitted = 0, completed = 0, failed = 0;
+    private long startTime = 0;
+
+    /**
+     * Class constructor. Uses one worker per spare processor core.
+     * @param debug whether debug statements are enabled
+     */
+    public IngestPipeline(boolean debug) {
+        this(debug, Math.max(1,
+            Runtime.getRuntime().availableProcessors() - 1));
+    }
+
+    /**
+     * Class constructor.
+     * @param debug whether debug statements are enabled
+     * @param numWorkers the maximum number of concurrent decoding threads
+     */
+    public IngestPipeline(boolean debug, int numWorkers) {
+        this.debug = debug;
+
+        workers = Executors.newFixedThreadPool(numWorkers,
+            new ThreadFactory() {
+                private int count = 0;
+
+                public Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r, "quickshow-ingest-" +
+                        (count++));
+
+                    //stay out of the way of the animation thread
+                    thread.setDaemon(true);
+                    thread.setPriority(Thread.NORM_PRIORITY - 1);
+
+                    return thread;
+                }
+            }
+        );
+
+        finished = new LinkedBlockingQueue<Future<MediaItem>>();
+        completion = new ExecutorCompletionService<MediaItem>(workers,
+            finished);
+    }
+
+    /**
+     * Queues a MediaItem for construction on a worker thread. The MediaItem
+     *   is given the next sequence number, so that receivers can restore
+     *   the submission order.
+     * @param job the Callable constructing the MediaItem
+     */
+    public void submit(final Callable<MediaItem> job) {
+        //start a new loading session if the previous one has finished
+        if(pending == 0) {
+            submitted = completed = failed = 0;
+            startTime = System.nanoTime();
+        }
+
+        final int sequence = nextSequence++;
+
+        completion.submit(new Callable<MediaItem>() {
+            public MediaItem call() throws Exception {
+                MediaItem item = job.call();
+
+                if(item != null) {
+                    item.setSequence(sequence);
+
+                    //resolved here rather than on the animation thread
+                    item.getCanonicalPath();
+                }
+
+                return item;
+            }
+        });
+
+        pending++;
+        submitted++;
+    }
+
+    /**
+     * Moves finished MediaItems into a list in the order they finished, so
+     *   that a slow MediaItem does not hold back the ones queued after it.
+     * @param dest the list receiving the finished MediaItems
+     * @param maxItems the maximum number of MediaItems to move
+     * @return the number of MediaItems moved
+     */
+    public int drainTo(ArrayList<MediaItem> dest, int maxItems) {
+        int count = 0;
+        Future<MediaItem> job;
+
+        while(count < maxItems && (job = completion.poll()) != null) {
+            pending--;
+
+            try {
+                MediaItem item = job.get();
+
+                if(item != null) {
+                    dest.add(item);
+                    count++;
+                }
+
+                completed++;
+            }
+
+            catch(InterruptedException | ExecutionException e) {
+                failed++;
+
+                if(debug) {
+                    e.printStackTrace();
+                }
+            }
+        }
+
+        if(debug && count > 0) {
+            Quickshow.println("ingest batch: " + count + ", " + getStatus());
+        }
+
+        return count;
+    }
+
+    /**
+     * Checks if any queued MediaItem has finished construction.
+     * @return true if at least one MediaItem can be drained
+     */
+    public boolean hasFinished() {
+        return !finished.isEmpty();
+    }
+
+    /**
+     * Checks if any queued MediaItems have not yet been drained.
+     * @return true if the pipeline is still loading
+     */
+    public boolean isBusy() {
+        return pending > 0;
+    }
+
+    /**
+     * Retrieves the number of MediaItems queued in the current session.
+     * @return integer
+     */
+    public int getSubmitted() {
+        return submitted;
+    }
+
+    /**
+     * Retrieves the number of MediaItems handled in the current session.
+     * @return integer
+     */
+    public int getCompleted() {
+        return completed + failed;
+    }
+
+    /**
+     * Retrieves the loading rate of the current session.
+     * @return the throughput in items per second
+     */
+    public float getThroughput() {
+        float elapsed = (System.nanoTime() - startTime) / 1e9f;
+
+        return (elapsed > 0f ? getCompleted() / elapsed : 0f);
+    }
+
+    /**
+     * Generates a progress string for the current session.
+     * @return the progress string, or an empty string if idle
+     */
+    public String getStatus() {
+        if(!isBusy()) {
+            return "";
+        }
+
+        return String.format("Loading %d of %d (%.1f/s)", getCompleted(),
+            submitted, getThroughput());
+    }
+
+    /**
+     * Stops all worker threads. Queued MediaItems are discarded.
+     */
+    public void shutdown() {
+        workers.shutdownNow();
+        finished.clear();
+        pending = 0;
+    }
+}
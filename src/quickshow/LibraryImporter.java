@@ -0,0 +1,435 @@
+/**
+ * @file LibraryImporter.java
+ * @description Imports every supported media file below a directory, walking
+ *   the tree and constructing MediaItems on a fork-join pool.
+ */
+
+package quickshow;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import quickshow.datatypes.MediaItem;
+import quickshow.datatypes.MediaType;
+
+public class LibraryImporter {
+    /**
+     * Constructs the MediaItem of an imported file.
+     */
+    public interface ItemFactory {
+        /**
+         * Constructs a MediaItem. Called concurrently from pool threads.
+         * @param path the path of the media file
+         * @param type the media type of the file
+         * @return a MediaItem, or null if the file could not be loaded
+         */
+        MediaItem create(String path, MediaType type);
+    }
+
+    private boolean debug;
+
+    private ForkJoinPool pool;
+    private ForkJoinTask<?> root = null;
+
+    //constructed MediaItems; pool threads wait while it is full
+    private ArrayBlockingQueue<MediaItem> finished;
+
+    private AtomicInteger numDirs, numFound, numLoaded, numFailed;
+    private long startTime = 0, endTime = 0;
+    private boolean reported = true;
+
+    //set to stop the tasks of the current import
+    private volatile boolean cancelled = false;
+
+    //maximum number of files handled by a single task
+    private static final int FILE_BATCH = 16;
+
+    //maximum number of undelivered MediaItems
+    private static final int MAX_FINISHED = 256;
+
+    //interval at which waiting pool threads check for cancellation
+    private static final long OFFER_WAIT = 100;
+
+    /**
+     * Class constructor. Uses one thread per spare processor core.
+     * @param debug whether debug statements are enabled
+     */
+    public LibraryImporter(boolean debug) {
+        this.debug = debug;
+
+        pool = new ForkJoinPool(Math.max(1,
+            Runtime.getRuntime().availableProcessors() - 1),
+            new ForkJoinPool.ForkJoinWorkerThreadFactory() {
+                //workers may be started from any thread
+                private AtomicInteger count = new AtomicInteger();
+
+                public ForkJoinWorkerThread newThread(ForkJoinPool pool) {
+                    ForkJoinWorkerThread thread =
+                        new ForkJoinWorkerThread(pool) {};
+
+                    thread.setName("quickshow-import-" +
+                        count.getAndIncrement());
+                    thread.setDaemon(true);
+                    thread.setPriority(Thread.NORM_PRIORITY - 1);
+
+                    return thread;
+                }
+            }, null, false);
+
+        finished = new ArrayBlockingQueue<MediaItem>(MAX_FINISHED);
+
+        numDirs = new AtomicInteger();
+        numFound = new AtomicInteger();
+        numLoaded = new AtomicInteger();
+        numFailed = new AtomicInteger();
+    }
+
+    /**
+     * Begins importing a directory tree. Symbolic links to directories are
+     *   not followed.
+     * @param dir the path of the root directory
+     * @param factory the ItemFactory constructing the MediaItems
+     * @return false if an import is already running
+     */
+    public boolean start(String dir, ItemFactory factory) {
+        if(isBusy()) {
+            return false;
+        }
+
+        //MediaItems left by a cancelled import
+        finished.clear();
+
+        cancelled = false;
+        reported = false;
+
+        numDirs.set(0);
+        numFound.set(0);
+        numLoaded.set(0);
+        numFailed.set(0);
+
+        startTime = System.nanoTime();
+        endTime = 0;
+
+        root = pool.submit(new DirTask(Paths.get(dir), factory));
+
+        return true;
+    }
+
+    /**
+     * Stops the current import. MediaItems not yet delivered are discarded.
+     */
+    public void cancel() {
+        cancelled = true;
+
+        finished.clear();
+    }
+
+    /**
+     * Moves constructed MediaItems into a list.
+     * @param dest the list receiving the MediaItems
+     * @param maxItems the maximum number of MediaItems to move
+     * @return the number of MediaItems moved
+     */
+    public int drainTo(ArrayList<MediaItem> dest, int maxItems) {
+        int count = 0;
+        MediaItem item;
+
+        //pool threads may still deliver after a cancel
+        if(cancelled) {
+            finished.clear();
+        }
+
+        while(count < maxItems && (item = finished.poll()) != null) {
+            dest.add(item);
+            count++;
+        }
+
+        if(!reported && root.isDone() && finished.isEmpty()) {
+            reported = true;
+            endTime = System.nanoTime();
+
+            if(debug) {
+                Quickshow.println("import finished: " + numDirs.get() +
+                    " directories, " + numFound.get() + " files, " +
+                    numLoaded.get() + " loaded, " + numFailed.get() +
+                    " failed, " + String.format("%.1f", getThroughput()) +
+                    " items/s");
+            }
+        }
+
+        return count;
+    }
+
+    /**
+     * Checks if constructed MediaItems are waiting to be drained.
+     * @return true if at least one MediaItem can be drained
+     */
+    public boolean hasFinished() {
+        return !cancelled && !finished.isEmpty();
+    }
+
+    /**
+     * Checks if an import is running or has undelivered MediaItems.
+     * @return true if the import is still in progress
+     */
+    public boolean isBusy() {
+        return (root != null && !root.isDone()) || hasFinished();
+    }
+
+    /**
+     * Retrieves the number of directories visited in the current import.
+     * @return integer
+     */
+    public int getDirectories() {
+        return numDirs.get();
+    }
+
+    /**
+     * Retrieves the number of media files found in the current import.
+     * @return integer
+     */
+    public int getFound() {
+        return numFound.get();
+    }
+
+    /**
+     * Retrieves the number of MediaItems constructed in the current import.
+     * @return integer
+     */
+    public int getLoaded() {
+        return numLoaded.get();
+    }
+
+    /**
+     * Retrieves the loading rate of the current import.
+     * @return the throughput in items per second
+     */
+    public float getThroughput() {
+        long end = (endTime != 0 ? endTime : System.nanoTime());
+        float elapsed = (end - startTime) / 1e9f;
+
+        return (elapsed > 0f ? numLoaded.get() / elapsed : 0f);
+    }
+
+    /**
+     * Generates a progress string for the current import.
+     * @return the progress string, or an empty string if idle
+     */
+    public String getStatus() {
+        if(!isBusy()) {
+            return "";
+        }
+
+        return String.format("Importing %d of %d in %d folders (%.1f/s)",
+            numLoaded.get() + numFailed.get(), numFound.get(),
+            numDirs.get(), getThroughput());
+    }
+
+    /**
+     * Stops all pool threads.
+     */
+    public void shutdown() {
+        cancelled = true;
+        pool.shutdownNow();
+    }
+
+    /**
+     * Fork-join task listing one directory. Subdirectories and batches of
+     *   media files are handled by forked subtasks.
+     */
+    private class DirTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private Path dir;
+        private ItemFactory factory;
+
+        /**
+         * Class constructor.
+         * @param dir the directory to list
+         * @param factory the ItemFactory constructing the MediaItems
+         */
+        private DirTask(Path dir, ItemFactory factory) {
+            this.dir = dir;
+            this.factory = factory;
+        }
+
+        /**
+         * Lists the directory and runs its subtasks.
+         */
+        @Override
+        protected void compute() {
+            if(cancelled) {
+                return;
+            }
+
+            ArrayList<RecursiveAction> tasks = new ArrayList<RecursiveAction>();
+            ArrayList<String> paths = new ArrayList<String>(FILE_BATCH);
+            ArrayList<MediaType> types = new ArrayList<MediaType>(FILE_BATCH);
+
+            DirectoryStream<Path> stream = null;
+
+            try {
+                stream = Files.newDirectoryStream(dir);
+
+                BasicFileAttributes attrs;
+                MediaType type;
+
+                for(Path entry : stream) {
+                    try {
+                        attrs = Files.readAttributes(entry,
+                            BasicFileAttributes.class,
+                            LinkOption.NOFOLLOW_LINKS);
+                    }
+
+                    catch(IOException e) {
+                        continue;
+                    }
+
+                    if(attrs.isDirectory()) {
+                        tasks.add(new DirTask(entry, factory));
+
+                        continue;
+                    }
+
+                    type = MediaType.classify(entry.toString());
+
+                    if(type != null) {
+                        paths.add(entry.toString());
+                        types.add(type);
+
+                        if(paths.size() == FILE_BATCH) {
+                            tasks.add(new FileTask(paths, types, factory));
+
+                            paths = new ArrayList<String>(FILE_BATCH);
+                            types = new ArrayList<MediaType>(FILE_BATCH);
+                        }
+                    }
+                }
+            }
+
+            catch(IOException | RuntimeException e) {
+                if(debug) {
+                    Quickshow.println("import could not list " + dir);
+                }
+            }
+
+            finally {
+                if(stream != null) {
+                    try {
+                        stream.close();
+                    }
+
+                    catch(IOException e) {}
+                }
+            }
+
+            if(!paths.isEmpty()) {
+                tasks.add(new FileTask(paths, types, factory));
+            }
+
+            numDirs.incrementAndGet();
+
+            invokeAll(tasks);
+        }
+    }
+
+    /**
+     * Fork-join task constructing the MediaItems of a batch of files.
+     */
+    private class FileTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private ArrayList<String> paths;
+        private ArrayList<MediaType> types;
+        private ItemFactory factory;
+
+        /**
+         * Class constructor.
+         * @param paths the paths of the media files
+         * @param types the media types of the files
+         * @param factory the ItemFactory constructing the MediaItems
+         */
+        private FileTask(ArrayList<String> paths, ArrayList<MediaType> types,
+            ItemFactory factory)
+        {
+            this.paths = paths;
+            this.types = types;
+            this.factory = factory;
+
+            numFound.addAndGet(paths.size());
+        }
+
+        /**
+         * Constructs the MediaItems of the batch.
+         */
+        @Override
+        protected void compute() {
+            MediaItem item;
+
+            for(int i = 0; i < paths.size() && !cancelled; i++) {
+                try {
+                    item = factory.create(paths.get(i), types.get(i));
+                }
+
+                catch(RuntimeException e) {
+                    item = null;
+
+                    if(debug) {
+                        e.printStackTrace();
+                    }
+                }
+
+                if(item != null) {
+                    //resolved here rather than on the animation thread
+                    item.getCanonicalPath();
+
+                    if(!deliver(item)) {
+                        return;
+                    }
+
+                    numLoaded.incrementAndGet();
+                }
+
+                else {
+                    numFailed.incrementAndGet();
+                }
+            }
+        }
+
+        /**
+         * Hands a MediaItem to the animation thread, waiting while too many
+         *   MediaItems are undelivered so that a large import cannot outrun
+         *   the frames draining it.
+         * @param item the MediaItem
+         * @return false if the import was cancelled while waiting
+         */
+        private boolean deliver(MediaItem item) {
+            try {
+                while(!cancelled) {
+                    if(finished.offer(item, OFFER_WAIT,
+                        TimeUnit.MILLISECONDS))
+                    {
+                        return true;
+                    }
+                }
+            }
+
+            catch(InterruptedException e) {}
+
+            return false;
+        }
+    }
+}
@@ -0,0 +1,749 @@
+/**
+ * @file MediaCatalog.java
+ * @description A persistent record of the MediaItems loaded into the
+ *   Quickshow, allowing a library to be restored without decoding or probing
+ *   its media files again.
+ */
+
+package quickshow;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import quickshow.datatypes.AudioItem;
+import quickshow.datatypes.ImageItem;
+import quickshow.datatypes.MediaItem;
+import quickshow.datatypes.MediaType;
+import quickshow.datatypes.MovieItem;
+import quickshow.datatypes.VisualItem;
+import quickshow.datatypes.WaveformSummary;
+
+/*
+ * Data file layout, all values big endian:
+ *   header:  magic, version (ints)
+ *   records: appended in the order the MediaItems were loaded, each a
+ *            payload length (int) followed by the payload:
+ *              path (UTF), media type (byte), file size, file modification
+ *              time (longs), width, height, display time in seconds (ints),
+ *              then for audio files the title, author (UTF), length in
+ *              seconds and waveform level count (ints) and levels (floats)
+ *   A path recorded more than once is described by its last record.
+ *
+ * Index file layout:
+ *   header:  magic, index version (ints), length of the data file covered
+ *            (long), entry count (int)
+ *   entries: per live record the path (UTF), record offset (long), record
+ *            length including its length prefix (int), file size and file
+ *            modification time (longs)
+ *   trailer: bytes of dead records (long)
+ *
+ * Thumbnails are not recorded; they are read from the ThumbnailStore, which
+ *   is keyed by the same path, size and modification time.
+ */
+public class MediaCatalog {
+    /**
+     * The location of the live record of a media file.
+     */
+    private static final class Entry {
+        private final long offset, size, modified;
+
+        //bytes taken by the record, including its length prefix
+        private final int length;
+
+        /**
+         * Class constructor.
+         * @param offset the offset of the record in the data file
+         * @param length the length of the record including its length
+         *   prefix
+         * @param size the size of the media file
+         * @param modified the modification time of the media file
+         */
+        private Entry(long offset, int length, long size, long modified) {
+            this.offset = offset;
+            this.length = length;
+            this.size = size;
+            this.modified = modified;
+        }
+    }
+
+    private boolean debug;
+
+    private File dataFile, indexFile;
+
+    //path -> live record, in the order the paths were first recorded
+    private LinkedHashMap<String, Entry> index;
+
+    private DataOutputStream out = null;
+    private long dataLength = 0;
+
+    //bytes of records superseded or describing removed files
+    private long deadBytes = 0;
+
+    private static final int MAGIC = 0x51534354;
+    private static final int VERSION = 1;
+    private static final int INDEX_VERSION = 2;
+    private static final int HEADER_SIZE = 8;
+
+    /**
+     * Class constructor.
+     * @param dir the directory holding the catalog files
+     * @param debug whether debug statements are enabled
+     */
+    public MediaCatalog(File dir, boolean debug) {
+        this.debug = debug;
+
+        if(!dir.isDirectory() && !dir.mkdirs() && debug) {
+            Quickshow.println("could not create catalog " + dir);
+        }
+
+        dataFile = new File(dir, "catalog.dat");
+        indexFile = new File(dir, "catalog.idx");
+
+        index = new LinkedHashMap<String, Entry>();
+    }
+
+    /**
+     * Reconstructs the recorded MediaItems whose files are unchanged. No
+     *   media file is opened; thumbnails are loaded when first drawn.
+     * @param parent the Quickshow object
+     * @param minim the Minim object controlling the audio
+     * @return an ArrayList of MediaItems in the order they were recorded
+     */
+    public synchronized ArrayList<MediaItem> restore(Quickshow parent,
+        ddf.minim.Minim minim)
+    {
+        long start = System.nanoTime();
+
+        ArrayList<MediaItem> result = new ArrayList<MediaItem>();
+
+        load();
+
+        if(index.isEmpty()) {
+            saveIndex();
+
+            return result;
+        }
+
+        RandomAccessFile raf = null;
+
+        try {
+            raf = new RandomAccessFile(dataFile, "r");
+
+            Iterator<Map.Entry<String, Entry>> iter =
+                index.entrySet().iterator();
+            Map.Entry<String, Entry> mapEntry;
+            Entry entry;
+            File file;
+            MediaItem item;
+
+            while(iter.hasNext()) {
+                mapEntry = iter.next();
+                entry = mapEntry.getValue();
+                file = new File(mapEntry.getKey());
+
+                item = null;
+
+                //files changed since they were recorded must be loaded again
+                if(file.length() == entry.size &&
+                    file.lastModified() == entry.modified)
+                {
+                    item = readItem(raf, entry.offset, parent, minim);
+                }
+
+                if(item != null) {
+                    result.add(item);
+                }
+
+                else {
+                    deadBytes += entry.length;
+
+                    iter.remove();
+                }
+            }
+        }
+
+        catch(IOException e) {
+            if(debug) {
+                e.printStackTrace();
+            }
+        }
+
+        finally {
+            close(raf);
+        }
+
+        if(deadBytes > dataLength / 2) {
+            compact();
+        }
+
+        saveIndex();
+
+        if(debug) {
+            Quickshow.println("catalog restored " + result.size() +
+                " items in " + (System.nanoTime() - start) / 1000000 + " ms");
+        }
+
+        return result;
+    }
+
+    /**
+     * Records a MediaItem. MediaItems of files already recorded with the
+     *   same size and modification time are not recorded again. Must not be
+     *   called before restore().
+     * @param item the MediaItem to record
+     */
+    public synchronized void append(MediaItem item) {
+        String path = item.getCanonicalPath();
+        File file = new File(path);
+
+        long size = file.length(), modified = file.lastModified();
+
+        //the file could not be resolved or no longer exists
+        if(modified == 0) {
+            return;
+        }
+
+        Entry old = index.get(path);
+
+        if(old != null && old.size == size && old.modified == modified) {
+            return;
+        }
+
+        try {
+            if(out == null) {
+                boolean empty = dataFile.length() < HEADER_SIZE;
+
+                out = new DataOutputStream(new BufferedOutputStream(
+                    new FileOutputStream(dataFile, !empty)));
+
+                if(empty) {
+                    out.writeInt(MAGIC);
+                    out.writeInt(VERSION);
+
+                    dataLength = HEADER_SIZE;
+                }
+            }
+
+            byte[] payload = encode(path, size, modified, item);
+
+            out.writeInt(payload.length);
+            out.write(payload);
+            out.flush();
+
+            //the superseded record is dead
+            if(old != null) {
+                deadBytes += old.length;
+            }
+
+            index.put(path, new Entry(dataLength, 4 + payload.length, size,
+                modified));
+            dataLength += 4 + payload.length;
+        }
+
+        catch(IOException e) {
+            if(debug) {
+                e.printStackTrace();
+            }
+
+            close(out);
+            out = null;
+        }
+    }
+
+    /**
+     * Retrieves the number of recorded media files.
+     * @return integer
+     */
+    public synchronized int size() {
+        return index.size();
+    }
+
+    /**
+     * Writes the index and closes the data file.
+     */
+    public synchronized void close() {
+        close(out);
+        out = null;
+
+        saveIndex();
+    }
+
+    /**
+     * Reads the index, then any records appended after it was written. A
+     *   record cut short by an interrupted write is discarded.
+     */
+    private void load() {
+        index.clear();
+        deadBytes = 0;
+        dataLength = dataFile.length();
+
+        long scanStart = readIndex();
+
+        if(scanStart < 0) {
+            index.clear();
+
+            scanStart = HEADER_SIZE;
+        }
+
+        if(dataLength < HEADER_SIZE) {
+            dataLength = 0;
+
+            return;
+        }
+
+        long end = scanStart;
+        DataInputStream in = null;
+
+        try {
+            in = new DataInputStream(new BufferedInputStream(
+                new FileInputStream(dataFile)));
+
+            if(in.readInt() != MAGIC || in.readInt() != VERSION) {
+                close(in);
+                in = null;
+
+                //unreadable catalog, start a new one
+                dataFile.delete();
+                index.clear();
+                dataLength = 0;
+
+                return;
+            }
+
+            skipFully(in, scanStart - HEADER_SIZE);
+
+            int length;
+            String path;
+            Entry old;
+
+            while(end + 4 <= dataLength) {
+                length = in.readInt();
+
+                if(length <= 0 || end + 4 + length > dataLength) {
+                    break;
+                }
+
+                //path, size and modification time lead each payload
+                in.mark(length);
+                path = in.readUTF();
+                in.readByte();
+
+                old = index.put(path, new Entry(end, 4 + length,
+                    in.readLong(), in.readLong()));
+
+                if(old != null) {
+                    deadBytes += old.length;
+                }
+
+                in.reset();
+                skipFully(in, length);
+
+                end += 4 + length;
+            }
+        }
+
+        catch(IOException e) {
+            if(debug) {
+                e.printStackTrace();
+            }
+        }
+
+        finally {
+            close(in);
+        }
+
+        if(end < dataLength) {
+            if(debug) {
+                Quickshow.println("catalog truncated at " + end);
+            }
+
+            truncate(end);
+        }
+    }
+
+    /**
+     * Reads the index file.
+     * @return the offset of the first record not covered by the index, or
+     *   -1 if the index is missing or does not match the data file
+     */
+    private long readIndex() {
+        if(!indexFile.isFile()) {
+            return -1;
+        }
+
+        DataInputStream in = null;
+
+        try {
+            in = new DataInputStream(new BufferedInputStream(
+                new FileInputStream(indexFile)));
+
+            if(in.readInt() != MAGIC || in.readInt() != INDEX_VERSION) {
+                return -1;
+            }
+
+            long covered = in.readLong();
+
+            if(covered < HEADER_SIZE || covered > dataLength) {
+                return -1;
+            }
+
+            int count = in.readInt();
+            String path;
+
+            for(int i = 0; i < count; i++) {
+                path = in.readUTF();
+
+                index.put(path, new Entry(in.readLong(), in.readInt(),
+                    in.readLong(), in.readLong()));
+            }
+
+            deadBytes = in.readLong();
+
+            return covered;
+        }
+
+        catch(IOException e) {
+            return -1;
+        }
+
+        finally {
+            close(in);
+        }
+    }
+
+    /**
+     * Writes the index file, replacing the previous one.
+     */
+    private void saveIndex() {
+        if(dataLength < HEADER_SIZE) {
+            indexFile.delete();
+
+            return;
+        }
+
+        File tmp = new File(indexFile.getPath() + ".tmp");
+        DataOutputStream idx = null;
+
+        try {
+            idx = new DataOutputStream(new BufferedOutputStream(
+                new FileOutputStream(tmp)));
+
+            idx.writeInt(MAGIC);
+            idx.writeInt(INDEX_VERSION);
+            idx.writeLong(dataLength);
+            idx.writeInt(index.size());
+
+            for(Map.Entry<String, Entry> mapEntry : index.entrySet()) {
+                idx.writeUTF(mapEntry.getKey());
+                idx.writeLong(mapEntry.getValue().offset);
+                idx.writeInt(mapEntry.getValue().length);
+                idx.writeLong(mapEntry.getValue().size);
+                idx.writeLong(mapEntry.getValue().modified);
+            }
+
+            idx.writeLong(deadBytes);
+
+            idx.close();
+            idx = null;
+
+            if(!tmp.renameTo(indexFile)) {
+                indexFile.delete();
+
+                if(!tmp.renameTo(indexFile)) {
+                    tmp.delete();
+                }
+            }
+        }
+
+        catch(IOException e) {
+            close(idx);
+            tmp.delete();
+
+            if(debug) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Rewrites the data file with only its live records.
+     */
+    private void compact() {
+        close(out);
+        out = null;
+
+        File tmp = new File(dataFile.getPath() + ".tmp");
+        LinkedHashMap<String, Entry> newIndex =
+            new LinkedHashMap<String, Entry>();
+
+        RandomAccessFile raf = null;
+        DataOutputStream data = null;
+
+        try {
+            raf = new RandomAccessFile(dataFile, "r");
+            data = new DataOutputStream(new BufferedOutputStream(
+                new FileOutputStream(tmp)));
+
+            data.writeInt(MAGIC);
+            data.writeInt(VERSION);
+
+            long offset = HEADER_SIZE;
+            byte[] payload;
+            Entry entry;
+
+            for(Map.Entry<String, Entry> mapEntry : index.entrySet()) {
+                entry = mapEntry.getValue();
+
+                raf.seek(entry.offset);
+                payload = new byte[raf.readInt()];
+                raf.readFully(payload);
+
+                data.writeInt(payload.length);
+                data.write(payload);
+
+                newIndex.put(mapEntry.getKey(), new Entry(offset,
+                    entry.length, entry.size, entry.modified));
+
+                offset += 4 + payload.length;
+            }
+
+            data.close();
+            data = null;
+            close(raf);
+            raf = null;
+
+            if(!tmp.renameTo(dataFile)) {
+                dataFile.delete();
+
+                if(!tmp.renameTo(dataFile)) {
+                    throw new IOException("could not replace " + dataFile);
+                }
+            }
+
+            if(debug) {
+                Quickshow.println("catalog compacted from " + dataLength +
+                    " to " + offset + " bytes");
+            }
+
+            index = newIndex;
+            dataLength = offset;
+            deadBytes = 0;
+        }
+
+        catch(IOException e) {
+            close(data);
+            tmp.delete();
+
+            if(debug) {
+                e.printStackTrace();
+            }
+        }
+
+        finally {
+            close(raf);
+        }
+    }
+
+    /**
+     * Cuts a partially written record off the end of the data file.
+     * @param length the length of the valid part of the data file
+     */
+    private void truncate(long length) {
+        RandomAccessFile raf = null;
+
+        try {
+            raf = new RandomAccessFile(dataFile, "rw");
+            raf.setLength(length);
+
+            dataLength = length;
+        }
+
+        catch(IOException e) {
+            if(debug) {
+                e.printStackTrace();
+            }
+        }
+
+        finally {
+            close(raf);
+        }
+    }
+
+    /**
+     * Serializes a MediaItem into a record payload.
+     * @param path the canonical path of the media file
+     * @param size the size of the media file
+     * @param modified the modification time of the media file
+     * @param item the MediaItem
+     * @return the payload bytes
+     */
+    private static byte[] encode(String path, long size, long modified,
+        MediaItem item) throws IOException
+    {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        DataOutputStream data = new DataOutputStream(bytes);
+
+        data.writeUTF(path);
+        data.writeByte(item.getType().ordinal());
+        data.writeLong(size);
+        data.writeLong(modified);
+
+        int width = 0, height = 0, displayTime = 0;
+
+        if(item instanceof MovieItem) {
+            width = ((MovieItem)item).getVideoWidth();
+            height = ((MovieItem)item).getVideoHeight();
+        }
+
+        if(item instanceof VisualItem) {
+            displayTime = ((VisualItem)item).getDisplayTime();
+        }
+
+        data.writeInt(width);
+        data.writeInt(height);
+        data.writeInt(displayTime);
+
+        if(item instanceof AudioItem) {
+            AudioItem audio = (AudioItem)item;
+            float[] levels = audio.getWaveform().getLevels();
+
+            data.writeUTF(audio.getTitle());
+            data.writeUTF(audio.getAuthor());
+            data.writeInt(audio.getLength());
+            data.writeInt(levels.length);
+
+            for(float level : levels) {
+                data.writeFloat(level);
+            }
+        }
+
+        data.close();
+
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Reconstructs the MediaItem of a record.
+     * @param raf the open data file
+     * @param offset the offset of the record
+     * @param parent the Quickshow object
+     * @param minim the Minim object controlling the audio
+     * @return a MediaItem, or null if the record is invalid
+     */
+    private static MediaItem readItem(RandomAccessFile raf, long offset,
+        Quickshow parent, ddf.minim.Minim minim) throws IOException
+    {
+        raf.seek(offset);
+
+        byte[] payload = new byte[raf.readInt()];
+        raf.readFully(payload);
+
+        DataInputStream data = new DataInputStream(
+            new ByteArrayInputStream(payload));
+
+        try {
+            String path = data.readUTF();
+            int type = data.readByte();
+
+            data.readLong();
+            data.readLong();
+
+            int width = data.readInt();
+            int height = data.readInt();
+            int displayTime = data.readInt();
+
+            if(type < 0 || type >= MediaType.values().length) {
+                return null;
+            }
+
+            MediaItem item;
+
+            switch(MediaType.values()[type]) {
+            case IMAGE:
+                ImageItem image = new ImageItem(parent, path, null);
+                image.setDisplayTime(displayTime);
+
+                item = image;
+
+                break;
+
+            case VIDEO:
+                item = new MovieItem(parent, path, width, height,
+                    displayTime);
+
+                break;
+
+            default:
+                String title = data.readUTF();
+                String author = data.readUTF();
+                int length = data.readInt();
+                float[] levels = new float[data.readInt()];
+
+                for(int i = 0; i < levels.length; i++) {
+                    levels[i] = data.readFloat();
+                }
+
+                item = new AudioItem(minim, path, title, author, length,
+                    new WaveformSummary(levels));
+            }
+
+            //recorded paths are already canonical
+            item.setCanonicalPath(path);
+
+            return item;
+        }
+
+        catch(EOFException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Skips bytes of a stream.
+     * @param in the stream
+     * @param count the number of bytes to skip
+     */
+    private static void skipFully(DataInputStream in, long count)
+        throws IOException
+    {
+        long skipped;
+
+        while(count > 0) {
+            skipped = in.skip(count);
+
+            if(skipped <= 0) {
+                throw new EOFException();
+            }
+
+            count -= skipped;
+        }
+    }
+
+    /**
+     * Closes a stream, ignoring errors.
+     * @param closeable the stream, or null
+     */
+    private static void close(java.io.Closeable closeable) {
+        if(closeable != null) {
+            try {
+                closeable.close();
+            }
+
+            catch(IOException e) {}
+        }
+    }
+}
@@ -0,0 +1,125 @@
+/**
+ * @file MediaLibrary.java
+ * @description The set of MediaItems loaded into the Quickshow, indexed by
+ *   normalized canonical path.
+ */
+
+package quickshow;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+
+import quickshow.datatypes.MediaItem;
+
+public class MediaLibrary {
+    private boolean debug;
+
+    private MediaCatalog catalog;
+
+    //loaded MediaItems in the order they were added
+    private LinkedHashMap<String, MediaItem> items;
+
+    private int duplicates = 0;
+
+    /**
+     * Class constructor.
+     * @param catalog the MediaCatalog recording added MediaItems, or null
+     * @param debug whether debug statements are enabled
+     */
+    public MediaLibrary(MediaCatalog catalog, boolean debug) {
+        this.catalog = catalog;
+        this.debug = debug;
+
+        items = new LinkedHashMap<String, MediaItem>();
+    }
+
+    /**
+     * Adds a MediaItem unless a MediaItem for the same file is already
+     *   loaded.
+     * @param item the MediaItem to add
+     * @return true if the MediaItem was added
+     */
+    public boolean add(MediaItem item) {
+        String key = key(item);
+
+        if(items.containsKey(key)) {
+            duplicates++;
+
+            if(debug) {
+                Quickshow.println("already loaded: " + item.getFileName());
+            }
+
+            return false;
+        }
+
+        items.put(key, item);
+
+        if(catalog != null) {
+            catalog.append(item);
+        }
+
+        return true;
+    }
+
+    /**
+     * Retrieves all loaded MediaItems in the order they were added.
+     * @return an ArrayList of MediaItems
+     */
+    public ArrayList<MediaItem> getItems() {
+        return new ArrayList<MediaItem>(items.values());
+    }
+
+    /**
+     * Retrieves the number of loaded MediaItems.
+     * @return integer
+     */
+    public int size() {
+        return items.size();
+    }
+
+    /**
+     * Retrieves the number of MediaItems rejected as already loaded.
+     * @return integer
+     */
+    public int getDuplicates() {
+        return duplicates;
+    }
+
+    /**
+     * Finds where a MediaItem belongs in a list of MediaItems, so that
+     *   MediaItems finished out of order are shown in the order they were
+     *   requested. MediaItems without a sequence number belong at the end.
+     * @param list the list in display order
+     * @param item the MediaItem to insert
+     * @return the index to insert the MediaItem at
+     */
+    public static int orderedIndex(List<? extends MediaItem> list,
+        MediaItem item)
+    {
+        int index = list.size();
+
+        if(item.getSequence() > 0) {
+            //late MediaItems are rarely far behind, so search from the end
+            while(index > 0 &&
+                list.get(index - 1).getSequence() > item.getSequence())
+            {
+                index--;
+            }
+        }
+
+        return index;
+    }
+
+    /**
+     * Generates the index key of a MediaItem. MediaItems of the same file
+     *   map to the same key, and files are compared ignoring case as they
+     *   were before the index existed.
+     * @param item the MediaItem
+     * @return the lower case canonical path
+     */
+    private static String key(MediaItem item) {
+        return item.getCanonicalPath().toLowerCase(Locale.ROOT);
+    }
+}
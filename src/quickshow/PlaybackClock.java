@@ -0,0 +1,143 @@
+/**
+ * @file PlaybackClock.java
+ * @description A pausable wall clock for timing slide show playback, which
+ *   keeps time regardless of how many frames are actually drawn.
+ */
+
+package quickshow;
+
+public class PlaybackClock {
+    //start of the current segment, moved forward while paused
+    private long origin;
+    private long pausedAt = -1;
+
+    private float targetRate;
+    private long lastTick = 0;
+
+    private int frames = 0, dropped = 0;
+
+    //wall time minus the time a per-frame counter would have measured
+    private double drift = 0;
+
+    /**
+     * Class constructor. The clock starts paused at zero.
+     * @param targetRate the intended frame rate in frames per second
+     */
+    public PlaybackClock(float targetRate) {
+        this.targetRate = targetRate;
+
+        origin = pausedAt = System.nanoTime();
+    }
+
+    /**
+     * Restarts the clock at zero, running.
+     */
+    public void start() {
+        origin = System.nanoTime();
+        pausedAt = -1;
+        lastTick = 0;
+    }
+
+    /**
+     * Stops the clock, keeping the elapsed time.
+     */
+    public void pause() {
+        if(pausedAt < 0) {
+            pausedAt = System.nanoTime();
+        }
+    }
+
+    /**
+     * Continues the clock after a call to pause().
+     */
+    public void resume() {
+        if(pausedAt >= 0) {
+            origin += System.nanoTime() - pausedAt;
+            pausedAt = -1;
+            lastTick = 0;
+        }
+    }
+
+    /**
+     * Checks if the clock is running.
+     * @return true if the clock is not paused
+     */
+    public boolean isRunning() {
+        return pausedAt < 0;
+    }
+
+    /**
+     * Retrieves the time elapsed in the current segment.
+     * @return the time in seconds
+     */
+    public float elapsed() {
+        long now = (pausedAt >= 0 ? pausedAt : System.nanoTime());
+
+        return (now - origin) / 1e9f;
+    }
+
+    /**
+     * Ends the current segment after a given length. Time elapsed beyond
+     *   that length counts towards the next segment, so late frames do not
+     *   delay the rest of the playback.
+     * @param seconds the length of the ended segment
+     */
+    public void advance(float seconds) {
+        origin += (long)(seconds * 1e9);
+    }
+
+    /**
+     * Records that a frame is being drawn, counting the frames skipped since
+     *   the previous one.
+     * @param frameRate the frame rate currently reported by the sketch
+     */
+    public void tick(float frameRate) {
+        if(pausedAt >= 0) {
+            return;
+        }
+
+        long now = System.nanoTime();
+
+        if(lastTick != 0 && frameRate > 0f) {
+            double actual = (now - lastTick) / 1e9;
+
+            frames++;
+            drift += actual - 1.0 / frameRate;
+
+            //frames that should have been drawn in between
+            int missed = (int)Math.round(actual * targetRate) - 1;
+
+            if(missed > 0) {
+                dropped += missed;
+            }
+        }
+
+        lastTick = now;
+    }
+
+    /**
+     * Retrieves the number of frames drawn while running.
+     * @return integer
+     */
+    public int getFrames() {
+        return frames;
+    }
+
+    /**
+     * Retrieves the number of frames skipped because drawing fell behind
+     *   the target frame rate.
+     * @return integer
+     */
+    public int getDroppedFrames() {
+        return dropped;
+    }
+
+    /**
+     * Retrieves the cumulative amount by which counting one frame period
+     *   per frame would have fallen behind the wall clock.
+     * @return the drift in seconds
+     */
+    public double getDrift() {
+        return drift;
+    }
+}
@@ -10,6 +10,7 @@ package quickshow;
 import java.util.ArrayList;
 
 import quickshow.datatypes.ImageItem;
+import quickshow.datatypes.MediaType;
 import quickshow.datatypes.VisualItem;
 import controlP5.Button;
 import controlP5.ControlEvent;
@@ -189,7 +190,7 @@ public class PopupDialogue {
         popupGroup.setVisible(toggle);
 
         if(item != null) {
-            if(item.checkType().equalsIgnoreCase("video")) {
+            if(item.getType() == MediaType.VIDEO) {
                 imgDisplaySlider.setVisible(false);
                 imgDisplaySlider.lock();
             }
@@ -332,7 +333,7 @@ public class PopupDialogue {
         switch(event.getName()) {
         case "Accept":
 
-            if(item.checkType().equalsIgnoreCase("image")) {
+            if(item.getType() == MediaType.IMAGE) {
                 int duration = (int)imgDisplaySlider.getValue();
                 ((ImageItem)item).setDisplayTime(duration);
                 Quickshow.println("Item duration: " + duration + 's');
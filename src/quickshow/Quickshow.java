@@ -8,6 +8,9 @@
 package quickshow;
 
 import java.util.ArrayList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 
 import processing.core.PApplet;
 import processing.core.PFont;
@@ -34,6 +37,18 @@ public class Quickshow extends PApplet {
     private slideShow show;
     private PopupDialogue popup;
 
+    private java.io.File cacheDir;
+    private ImageCache imageCache;
+    private ThumbnailStore thumbStore;
+    private MediaCatalog catalog;
+    private MediaLibrary library;
+    private AssetCache assets;
+
+    private StartupProfiler startup;
+
+    //library items recorded in previous sessions, restored after setup
+    private Future<ArrayList<MediaItem>> restored = null;
+
     //Test variables for debug purposes
     private audioTimeline aT;
     private visualTimeline vTimeline;
@@ -46,6 +61,8 @@ public class Quickshow extends PApplet {
     //These variables are for the Visual Thumbnail UI to bound where the mouse responds
 
     public void setup() {
+        startup = new StartupProfiler(debug);
+
         size(900, 600);
         frameRate(24);
 
@@ -53,32 +70,84 @@ public class Quickshow extends PApplet {
             frame.setTitle("Quickshow");
         }
 
+        startup.mark("window");
+
         control = new ControlP5(this);
         control.setFont(control.getFont().getFont(), 15);
 
+        startup.mark("ControlP5");
+
         minim = new Minim(this);
 
+        startup.mark("Minim");
+
+        assets = new AssetCache(this, debug);
+
+        //full resolution image budget, overridable with -Dquickshow.imageCacheMB
+        long cacheBudget = Math.min(256L << 20,
+            Runtime.getRuntime().maxMemory() / 4);
+        cacheBudget = Long.getLong("quickshow.imageCacheMB",
+            cacheBudget >> 20) << 20;
+        imageCache = new ImageCache(this, cacheBudget, debug);
+
+        cacheDir = new java.io.File(System.getProperty("user.home"),
+            ".quickshow");
+
+        thumbStore = new ThumbnailStore(new java.io.File(cacheDir, "thumbs"),
+            64L << 20, debug);
+
+        catalog = new MediaCatalog(new java.io.File(cacheDir, "catalog"),
+            debug);
+        library = new MediaLibrary(catalog, debug);
+
+        //reading the catalog does not hold up the first frame
+        restored = startup.defer("media catalog",
+            new Callable<ArrayList<MediaItem>>() {
+                public ArrayList<MediaItem> call() {
+                    return catalog.restore(Quickshow.this, minim);
+                }
+            });
+
+        startup.mark("caches");
+
         show = new slideShow(this, control);
 
+        startup.mark("slide show");
+
         audioListbox = new audiolistUI(this, control);
 
         cbU = new controlbuttonUI(control);
 
         popup = new PopupDialogue(this, control);
 
-        PFont font = loadFont("data/SansSerif.plain-15.vlw");
+        startup.mark("controls");
+
+        PFont font = assets.getFont("SansSerif.plain-15.vlw");
+
+        startup.mark("font");
 
         aT = new audioTimeline(this, minim, font);
 
         vTimeline = new visualTimeline(this, font);
         thumbnails = new visualthumbnailUI(this, font);
 
+        startup.mark("timelines");
+
+        //the first directory listing is scanned in the background
         browse = new FileBrowser(this, minim, control, ".", font);
+
+        startup.mark("file browser");
     }
 
     public void draw() {
+        startup.firstFrame();
+
         background(38, 38, 38);
 
+        if(restored != null && restored.isDone()) {
+            restoreLibrary();
+        }
+
         if(browse.isEnabled()) {
             browse.draw();
         }
@@ -105,6 +174,8 @@ public class Quickshow extends PApplet {
                 closeFBActions();
             }
 
+            cbU.setLoadStatus(browse.getLoadStatus());
+
             //check if mouse over timelines, do popups
             mouseOver();
         }
@@ -163,6 +234,7 @@ public class Quickshow extends PApplet {
 
             case "Shuffle Slides":
             case "transitionToggle":
+            case "mixToggle":
                 show.controlEvent(theEvent);
 
                 break;
@@ -378,22 +450,25 @@ public class Quickshow extends PApplet {
                 println("RESULT SIZE " + results.size());
             }
 
-            if(browse.isAudioMode()) {
-                ArrayList<AudioItem> audios = new ArrayList<AudioItem>();
+            //batches loaded in the background may outlive a media type switch
+            ArrayList<AudioItem> audios = new ArrayList<AudioItem>();
+            ArrayList<VisualItem> visuals = new ArrayList<VisualItem>();
 
-                for(MediaItem item : results) {
+            for(MediaItem item : results) {
+                if(item instanceof AudioItem) {
                     audios.add((AudioItem)item);
                 }
-                audioListbox.receiveSongs(audios);
-            }
 
-            else {
-                ArrayList<VisualItem> visuals = new ArrayList<VisualItem>();
-
-                for(MediaItem item : results) {
+                else {
                     visuals.add((VisualItem)item);
                 }
+            }
 
+            if(!audios.isEmpty()) {
+                audioListbox.receiveSongs(audios);
+            }
+
+            if(!visuals.isEmpty()) {
                 thumbnails.receiveVisualItems(visuals);
             }
         }
@@ -401,6 +476,51 @@ public class Quickshow extends PApplet {
         toggleMain(true);
     }
 
+    /**
+     * Adds the MediaItems recorded in the previous sessions once they have
+     *   been read.
+     */
+    private void restoreLibrary() {
+        ArrayList<MediaItem> items;
+
+        try {
+            items = restored.get();
+        }
+
+        catch(InterruptedException | ExecutionException e) {
+            items = new ArrayList<MediaItem>();
+
+            if(debug) {
+                e.printStackTrace();
+            }
+        }
+
+        restored = null;
+
+        ArrayList<AudioItem> audios = new ArrayList<AudioItem>();
+        ArrayList<VisualItem> visuals = new ArrayList<VisualItem>();
+
+        for(MediaItem item : items) {
+            if(item instanceof AudioItem) {
+                audios.add((AudioItem)item);
+            }
+
+            else {
+                visuals.add((VisualItem)item);
+            }
+        }
+
+        if(!audios.isEmpty()) {
+            audioListbox.receiveSongs(audios);
+        }
+
+        if(!visuals.isEmpty()) {
+            thumbnails.receiveVisualItems(visuals);
+        }
+
+        cbU.setPageIndex(thumbnails.getNumPages(), thumbnails.getCurrIndex());
+    }
+
     /**
      * Toggles the main Quickshow UI components.
      * @param visible whether or not to show the main UI components
@@ -418,6 +538,75 @@ public class Quickshow extends PApplet {
         return debug;
     }
 
+    /**
+     * Retrieves the cache shared by all ImageItems.
+     * @return the ImageCache object
+     */
+    public ImageCache getImageCache() {
+        return imageCache;
+    }
+
+    /**
+     * Retrieves the directory holding persistent Quickshow caches.
+     * @return a File object
+     */
+    public java.io.File getCacheDir() {
+        return cacheDir;
+    }
+
+    /**
+     * Retrieves the persistent thumbnail store.
+     * @return the ThumbnailStore object
+     */
+    public ThumbnailStore getThumbnailStore() {
+        return thumbStore;
+    }
+
+    /**
+     * Retrieves the cache of shared data directory resources.
+     * @return the AssetCache object
+     */
+    public AssetCache getAssets() {
+        return assets;
+    }
+
+    /**
+     * Retrieves the profiler timing the Quickshow startup.
+     * @return the StartupProfiler object
+     */
+    public StartupProfiler getStartupProfiler() {
+        return startup;
+    }
+
+    /**
+     * Retrieves the library of loaded MediaItems.
+     * @return the MediaLibrary object
+     */
+    public MediaLibrary getLibrary() {
+        return library;
+    }
+
+    /**
+     * Stops the background threads and saves the media catalog index
+     *   before Quickshow exits.
+     */
+    @Override
+    public void dispose() {
+        if(browse != null) {
+            browse.shutdown();
+        }
+
+        if(show != null) {
+            show.shutdown();
+        }
+
+        if(catalog != null) {
+            catalog.close();
+        }
+
+        super.dispose();
+    }
+
     /**
      * Main method for executing Quickshow as a Java application.
      * @param args command line arguments
@@ -0,0 +1,264 @@
+/**
+ * @file SlidePreloader.java
+ * @description Prepares upcoming slide show VisualItems on a background
+ *   thread while the current slide is displayed.
+ */
+
+package quickshow;
+
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+import processing.video.Movie;
+import quickshow.datatypes.ImageItem;
+import quickshow.datatypes.MovieItem;
+import quickshow.datatypes.VisualItem;
+
+public class SlidePreloader {
+    /**
+     * A queued VisualItem.
+     */
+    private static final class Job {
+        private final VisualItem item;
+        private Future<?> future;
+
+        //set under the lock of the Job once the slide show displays or
+        //cancels the item; also read without it to skip unstarted work
+        private volatile boolean claimed = false;
+
+        /**
+         * Class constructor.
+         * @param item the VisualItem to prepare
+         */
+        private Job(VisualItem item) {
+            this.item = item;
+        }
+    }
+
+    private boolean debug;
+
+    //display size images are prepared for
+    private int width, height;
+
+    private ExecutorService worker;
+
+    //queued VisualItems in display order; only touched by the animation thread
+    private LinkedList<Job> jobs;
+
+    private int ready = 0, late = 0;
+
+    //longest wait for the first frame of a video in milliseconds
+    private static final long FRAME_TIMEOUT = 3000;
+
+    /**
+     * Class constructor.
+     * @param width the width of the display
+     * @param height the height of the display
+     * @param debug whether debug statements are enabled
+     */
+    public SlidePreloader(int width, int height, boolean debug) {
+        this.width = width;
+        this.height = height;
+        this.debug = debug;
+
+        jobs = new LinkedList<Job>();
+
+        worker = Executors.newSingleThreadExecutor(new ThreadFactory() {
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "quickshow-preload");
+
+                thread.setDaemon(true);
+                thread.setPriority(Thread.NORM_PRIORITY - 1);
+
+                return thread;
+            }
+        });
+    }
+
+    /**
+     * Queues a VisualItem to be prepared. Must be called from the animation
+     *   thread. Images are decoded and fitted to the display in the
+     *   ImageCache; videos are started here, since a Movie may only be
+     *   created on the animation thread, and paused on their first frame by
+     *   the preload thread.
+     * @param item the upcoming VisualItem
+     */
+    public void preload(VisualItem item) {
+        final Job job = new Job(item);
+
+        if(item instanceof MovieItem) {
+            Movie movie = ((MovieItem)item).getMovie();
+
+            movie.play();
+            movie.volume(0f);
+        }
+
+        job.future = worker.submit(new Runnable() {
+            public void run() {
+                if(job.claimed) {
+                    return;
+                }
+
+                try {
+                    if(job.item instanceof MovieItem) {
+                        preroll(job);
+                    }
+
+                    else {
+                        ((ImageItem)job.item).getFrame(width, height);
+                    }
+                }
+
+                catch(RuntimeException e) {
+                    if(debug) {
+                        e.printStackTrace();
+                    }
+                }
+            }
+        });
+
+        jobs.add(job);
+    }
+
+    /**
+     * Marks a VisualItem as displayed. A video still being prepared is left
+     *   playing for the slide show to take over.
+     * @param item the VisualItem about to be displayed
+     * @return true if the VisualItem had finished preparing
+     */
+    public boolean claim(VisualItem item) {
+        Iterator<Job> iter = jobs.iterator();
+        Job job;
+
+        while(iter.hasNext()) {
+            job = iter.next();
+
+            if(job.item == item) {
+                iter.remove();
+
+                synchronized(job) {
+                    job.claimed = true;
+                }
+
+                boolean done = job.future.isDone();
+
+                if(done) {
+                    ready++;
+                }
+
+                else {
+                    late++;
+
+                    if(debug) {
+                        Quickshow.println("slide not preloaded in time: " +
+                            item.getFileName());
+                    }
+                }
+
+                return done;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Cancels all queued VisualItems and releases the videos started for
+     *   them.
+     */
+    public void cancelAll() {
+        for(Job job : jobs) {
+            job.future.cancel(false);
+
+            //the preload thread only uses the video while holding the lock
+            //and before the job is claimed
+            synchronized(job) {
+                job.claimed = true;
+
+                if(job.item instanceof MovieItem) {
+                    ((MovieItem)job.item).releaseMovie();
+                }
+            }
+        }
+
+        jobs.clear();
+    }
+
+    /**
+     * Retrieves the number of slides prepared before they were displayed.
+     * @return integer
+     */
+    public int getReady() {
+        return ready;
+    }
+
+    /**
+     * Retrieves the number of slides displayed before they were prepared.
+     * @return integer
+     */
+    public int getLate() {
+        return late;
+    }
+
+    /**
+     * Stops the preload thread.
+     */
+    public void shutdown() {
+        cancelAll();
+
+        worker.shutdownNow();
+    }
+
+    /**
+     * Waits for the first frame of a started video and pauses it, unless the
+     *   slide show has already taken the video over.
+     * @param job the Job of the video
+     */
+    private void preroll(Job job) {
+        Movie movie;
+
+        //a video released by cancelAll() must not be loaded again
+        synchronized(job) {
+            if(job.claimed) {
+                return;
+            }
+
+            movie = ((MovieItem)job.item).getMovie();
+        }
+
+        long deadline = System.currentTimeMillis() + FRAME_TIMEOUT;
+
+        while(System.currentTimeMillis() < deadline) {
+            //cancelAll() releases the video under the same lock
+            synchronized(job) {
+                if(job.claimed) {
+                    return;
+                }
+
+                if(movie.available()) {
+                    movie.read();
+
+                    break;
+                }
+            }
+
+            try {
+                Thread.sleep(5);
+            }
+
+            catch(InterruptedException e) {
+                break;
+            }
+        }
+
+        synchronized(job) {
+            if(!job.claimed) {
+                movie.pause();
+            }
+        }
+    }
+}
@@ -0,0 +1,166 @@
+/**
+ * @file StartupProfiler.java
+ * @description Times the startup of each Quickshow component and runs the
+ *   initialisation not needed by the first frame on a background thread.
+ */
+
+package quickshow;
+
+import java.util.ArrayList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+public class StartupProfiler {
+    private boolean debug;
+
+    private long startTime, lastMark;
+    private volatile long firstFrameTime = 0;
+
+    //component name, elapsed milliseconds pairs in the order measured
+    private final ArrayList<String> names;
+    private final ArrayList<Long> times;
+
+    private ExecutorService worker;
+
+    //time-to-first-frame budget in milliseconds
+    private long budget;
+
+    /**
+     * Class constructor. Startup is timed from this call. The budget can be
+     *   overridden with -Dquickshow.firstFrameBudgetMs.
+     * @param debug whether debug statements are enabled
+     */
+    public StartupProfiler(boolean debug) {
+        this.debug = debug;
+
+        startTime = lastMark = System.nanoTime();
+
+        names = new ArrayList<String>();
+        times = new ArrayList<Long>();
+
+        budget = Long.getLong("quickshow.firstFrameBudgetMs", 500);
+
+        worker = Executors.newSingleThreadExecutor(new ThreadFactory() {
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "quickshow-startup");
+
+                thread.setDaemon(true);
+
+                return thread;
+            }
+        });
+    }
+
+    /**
+     * Records the time taken since the previous mark by a component
+     *   initialised on the animation thread.
+     * @param name the name of the component
+     */
+    public void mark(String name) {
+        long now = System.nanoTime();
+
+        record(name, now - lastMark);
+
+        lastMark = now;
+    }
+
+    /**
+     * Queues initialisation to run in the background after setup. Tasks run
+     *   one at a time in the order queued. Must be called before the first
+     *   frame.
+     * @param name the name of the component
+     * @param task the initialisation to run
+     * @return a Future holding the result of the task
+     */
+    public <T> Future<T> defer(final String name, final Callable<T> task) {
+        return worker.submit(new Callable<T>() {
+            public T call() throws Exception {
+                long start = System.nanoTime();
+
+                try {
+                    return task.call();
+                }
+
+                finally {
+                    record(name + " (deferred)", System.nanoTime() - start);
+                }
+            }
+        });
+    }
+
+    /**
+     * Records that the first frame is being drawn, and reports the startup
+     *   times if debug statements are enabled or the budget was exceeded.
+     *   Later calls have no effect.
+     */
+    public void firstFrame() {
+        if(firstFrameTime != 0) {
+            return;
+        }
+
+        firstFrameTime = System.nanoTime();
+
+        long elapsed = (firstFrameTime - startTime) / 1000000;
+
+        if(debug || elapsed > budget) {
+            Quickshow.println(getReport());
+        }
+
+        //threads are only needed while deferred tasks remain
+        worker.shutdown();
+    }
+
+    /**
+     * Retrieves the time from construction to the first frame.
+     * @return the time in milliseconds, or -1 if no frame was drawn yet
+     */
+    public long getFirstFrameTime() {
+        return (firstFrameTime != 0 ?
+            (firstFrameTime - startTime) / 1000000 : -1);
+    }
+
+    /**
+     * Generates the startup timing breakdown.
+     * @return the report string
+     */
+    public String getReport() {
+        StringBuilder report = new StringBuilder("startup times (ms):");
+
+        synchronized(names) {
+            for(int i = 0; i < names.size(); i++) {
+                report.append(String.format("\n  %-28s %6d", names.get(i),
+                    times.get(i)));
+            }
+        }
+
+        long elapsed = getFirstFrameTime();
+
+        if(elapsed >= 0) {
+            report.append(String.format("\n  %-28s %6d (budget %d)",
+                "time to first frame", elapsed, budget));
+        }
+
+        return report.toString();
+    }
+
+    /**
+     * Records the time taken by a component. Deferred components finishing
+     *   after the first frame are reported as they finish.
+     * @param name the name of the component
+     * @param nanos the time taken in nanoseconds
+     */
+    private void record(String name, long nanos) {
+        synchronized(names) {
+            names.add(name);
+            times.add(nanos / 1000000);
+        }
+
+        if(debug && firstFrameTime != 0) {
+            Quickshow.println("startup: " + name + " took " +
+                (nanos / 1000000) + " ms");
+        }
+    }
+}
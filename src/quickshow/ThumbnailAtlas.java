@@ -0,0 +1,528 @@
+/**
+ * @file ThumbnailAtlas.java
+ * @description A single packed file holding the raw ARGB thumbnails of one
+ *   directory, read through a memory mapping.
+ */
+
+package quickshow;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.HashMap;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import processing.core.PImage;
+
+/*
+ * File layout, all values big endian:
+ *   header: magic, version, tile width, tile height, entry count (ints)
+ *   index:  per entry a key (long), width, height (shorts) and format (int)
+ *   tiles:  per entry tile width * tile height ARGB ints, row stride equal
+ *           to the tile width
+ */
+public class ThumbnailAtlas {
+    private boolean debug;
+
+    private File file;
+    private int tileWidth, tileHeight;
+
+    private MappedByteBuffer map = null;
+    private int tileStart;
+
+    //held to read tiles, and exclusively to replace or unmap the mapping
+    private final ReentrantReadWriteLock lock;
+
+    //entry key -> entry index
+    private HashMap<Long, Integer> slots;
+    private short[] widths, heights;
+    private int[] formats;
+
+    //file name -> entry key, so each file is only examined once
+    private ConcurrentHashMap<String, Long> keys;
+
+    private static final int MAGIC = 0x51534154;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 20;
+    private static final int ENTRY_SIZE = 16;
+
+    /**
+     * Class constructor. Maps the atlas file if it exists and is valid.
+     * @param file the atlas file
+     * @param tileWidth the width of each tile
+     * @param tileHeight the height of each tile
+     * @param debug whether debug statements are enabled
+     */
+    public ThumbnailAtlas(File file, int tileWidth, int tileHeight,
+        boolean debug)
+    {
+        this.file = file;
+        this.tileWidth = tileWidth;
+        this.tileHeight = tileHeight;
+        this.debug = debug;
+
+        lock = new ReentrantReadWriteLock();
+        slots = new HashMap<Long, Integer>();
+        keys = new ConcurrentHashMap<String, Long>();
+
+        if(file.isFile()) {
+            open();
+        }
+    }
+
+    /**
+     * Maps the atlas file and reads its index. The write lock must be held
+     *   unless the atlas is still being constructed.
+     */
+    private void open() {
+        RandomAccessFile raf = null;
+
+        try {
+            raf = new RandomAccessFile(file, "r");
+            FileChannel channel = raf.getChannel();
+
+            MappedByteBuffer buf = channel.map(FileChannel.MapMode.READ_ONLY,
+                0, channel.size());
+
+            if(buf.limit() < HEADER_SIZE || buf.getInt(0) != MAGIC ||
+                buf.getInt(4) != VERSION || buf.getInt(8) != tileWidth ||
+                buf.getInt(12) != tileHeight)
+            {
+                return;
+            }
+
+            int count = buf.getInt(16);
+            tileStart = HEADER_SIZE + count*ENTRY_SIZE;
+
+            if(buf.limit() != tileStart + 4L*count*tileWidth*tileHeight) {
+                return;
+            }
+
+            widths = new short[count];
+            heights = new short[count];
+            formats = new int[count];
+
+            int pos;
+            for(int i = 0; i < count; i++) {
+                pos = HEADER_SIZE + i*ENTRY_SIZE;
+
+                slots.put(buf.getLong(pos), i);
+                widths[i] = buf.getShort(pos + 8);
+                heights[i] = buf.getShort(pos + 10);
+                formats[i] = buf.getInt(pos + 12);
+            }
+
+            map = buf;
+
+            if(debug) {
+                Quickshow.println("mapped thumbnail atlas " + file + ": " +
+                    count + " tiles");
+            }
+        }
+
+        catch(IOException e) {
+            if(debug) {
+                e.printStackTrace();
+            }
+        }
+
+        finally {
+            //the mapping stays valid after the channel is closed
+            if(raf != null) {
+                try {
+                    raf.close();
+                }
+
+                catch(IOException e) {}
+            }
+        }
+    }
+
+    /**
+     * Copies the stored thumbnail of a file out of the mapping.
+     * @param fileName the file name of the media file
+     * @return the thumbnail, or null if the atlas has no current tile for it
+     */
+    public PImage get(String fileName) {
+        lock.readLock().lock();
+
+        try {
+            if(map == null) {
+                return null;
+            }
+
+            Integer slot = slots.get(keyOf(fileName));
+
+            if(slot == null) {
+                return null;
+            }
+
+            int width = widths[slot], height = heights[slot];
+            PImage result = new PImage(width, height, formats[slot]);
+
+            IntBuffer tile = ((ByteBuffer)map.duplicate()
+                .position(tileStart + 4*slot*tileWidth*tileHeight))
+                .asIntBuffer();
+
+            for(int y = 0; y < height; y++) {
+                tile.position(y*tileWidth);
+                tile.get(result.pixels, y*width, width);
+            }
+
+            return result;
+        }
+
+        finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Forgets the key of a file, so that a change to the file is noticed.
+     * @param fileName the file name of the media file
+     */
+    public void invalidate(String fileName) {
+        keys.remove(fileName);
+    }
+
+    /**
+     * Replaces the atlas file and maps the new one. A null thumbnail keeps
+     *   the current tile of its file, which is copied within the file rather
+     *   than read into an image; files without one, and thumbnails larger
+     *   than a tile, are skipped. Meant to be called from a background
+     *   thread, one save at a time. Tiles can still be read while the new
+     *   file is written; the old mapping is only released to replace the
+     *   file, since a mapped file cannot be replaced on every platform.
+     * @param fileNames the file names of the media files
+     * @param thumbs the thumbnails, in the same order as the file names
+     * @return true if the file was written
+     */
+    public boolean save(List<String> fileNames, List<PImage> thumbs) {
+        File tmp = new File(file.getPath() + ".tmp");
+        boolean written;
+
+        lock.readLock().lock();
+
+        try {
+            written = write(fileNames, thumbs, tmp);
+        }
+
+        finally {
+            lock.readLock().unlock();
+        }
+
+        if(!written) {
+            return false;
+        }
+
+        lock.writeLock().lock();
+
+        try {
+            close();
+
+            boolean replaced = replace(tmp);
+
+            open();
+
+            if(debug && !replaced) {
+                Quickshow.println("could not replace thumbnail atlas " + file);
+            }
+
+            return replaced;
+        }
+
+        finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Finds the current tile of a file. The read lock must be held.
+     * @param fileName the file name of the media file
+     * @return the entry index, or -1 if the atlas has no current tile for it
+     */
+    private int slotOf(String fileName) {
+        Integer slot = (map != null ? slots.get(keyOf(fileName)) : null);
+
+        return (slot != null ? slot : -1);
+    }
+
+    /**
+     * Writes a new atlas file beside the current one. The read lock must be
+     *   held.
+     * @param fileNames the file names of the media files
+     * @param thumbs the thumbnails, in the same order as the file names
+     * @param tmp the file to write
+     * @return true if the file was written with at least one tile
+     */
+    private boolean write(List<String> fileNames, List<PImage> thumbs,
+        File tmp)
+    {
+        //the whole file must be addressable by a single mapping
+        int maxCount = (Integer.MAX_VALUE - HEADER_SIZE) /
+            (ENTRY_SIZE + 4*tileWidth*tileHeight);
+
+        //entry index of each kept tile, or -1 for a new thumbnail
+        int[] kept = new int[thumbs.size()];
+
+        ListIterator<String> nameIter = fileNames.listIterator();
+        String fileName;
+        int count = 0, i = 0;
+
+        for(PImage thumb : thumbs) {
+            fileName = nameIter.next();
+            kept[i] = (thumb == null ? slotOf(fileName) : -1);
+
+            if(count < maxCount && (kept[i] >= 0 ||
+                fits(thumb, tileWidth, tileHeight)))
+            {
+                count++;
+            }
+
+            i++;
+        }
+
+        if(count == 0) {
+            return false;
+        }
+
+        RandomAccessFile raf = null;
+
+        try {
+            raf = new RandomAccessFile(tmp, "rw");
+            raf.setLength(0);
+            FileChannel channel = raf.getChannel();
+
+            ByteBuffer index = ByteBuffer.allocate(HEADER_SIZE +
+                count*ENTRY_SIZE);
+            index.putInt(MAGIC).putInt(VERSION).putInt(tileWidth)
+                .putInt(tileHeight).putInt(count);
+
+            ByteBuffer tile = ByteBuffer.allocate(4*tileWidth*tileHeight);
+            IntBuffer tilePixels = tile.asIntBuffer();
+
+            channel.position(index.capacity());
+
+            ByteBuffer oldTile;
+            int tileSize = 4*tileWidth*tileHeight, slot, written = 0;
+
+            nameIter = fileNames.listIterator();
+            i = 0;
+
+            for(PImage thumb : thumbs) {
+                fileName = nameIter.next();
+                slot = kept[i++];
+
+                if(written == count) {
+                    break;
+                }
+
+                //tile kept from the current file
+                if(slot >= 0) {
+                    written++;
+
+                    index.putLong(keyOf(fileName)).putShort(widths[slot])
+                        .putShort(heights[slot]).putInt(formats[slot]);
+
+                    oldTile = map.duplicate();
+                    oldTile.position(tileStart + slot*tileSize);
+                    oldTile.limit(oldTile.position() + tileSize);
+
+                    while(oldTile.hasRemaining()) {
+                        channel.write(oldTile);
+                    }
+
+                    continue;
+                }
+
+                if(!fits(thumb, tileWidth, tileHeight)) {
+                    continue;
+                }
+
+                written++;
+
+                index.putLong(keyOf(fileName)).putShort((short)thumb.width)
+                    .putShort((short)thumb.height).putInt(thumb.format);
+
+                thumb.loadPixels();
+
+                tilePixels.clear();
+                for(int y = 0; y < thumb.height; y++) {
+                    tilePixels.position(y*tileWidth);
+                    tilePixels.put(thumb.pixels, y*thumb.width, thumb.width);
+                }
+
+                tile.clear();
+                while(tile.hasRemaining()) {
+                    channel.write(tile);
+                }
+            }
+
+            index.flip();
+            channel.position(0);
+            while(index.hasRemaining()) {
+                channel.write(index);
+            }
+
+            raf.close();
+            raf = null;
+
+            return true;
+        }
+
+        catch(IOException e) {
+            tmp.delete();
+
+            return false;
+        }
+
+        finally {
+            if(raf != null) {
+                try {
+                    raf.close();
+                }
+
+                catch(IOException e) {}
+            }
+        }
+    }
+
+    /**
+     * Moves a newly written atlas file over the current one. The write lock
+     *   must be held and the mapping released.
+     * @param tmp the newly written file
+     * @return true if the file was replaced
+     */
+    private boolean replace(File tmp) {
+        if(!tmp.renameTo(file)) {
+            file.delete();
+
+            if(!tmp.renameTo(file)) {
+                tmp.delete();
+
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Releases the mapping. The write lock must be held.
+     */
+    private void close() {
+        MappedByteBuffer old = map;
+
+        map = null;
+        slots.clear();
+
+        if(old != null) {
+            unmap(old);
+        }
+    }
+
+    /**
+     * Unmaps a mapping immediately rather than when it is collected. Falls
+     *   back to waiting for collection where the JVM offers no way to do so.
+     * @param buf the mapping, which must not be used afterwards
+     */
+    private static void unmap(MappedByteBuffer buf) {
+        try {
+            //Java 9 and later
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+            theUnsafe.setAccessible(true);
+
+            unsafeClass.getMethod("invokeCleaner", ByteBuffer.class)
+                .invoke(theUnsafe.get(null), buf);
+        }
+
+        catch(ReflectiveOperationException | RuntimeException e) {
+            try {
+                //Java 8 and earlier
+                Method cleaner = buf.getClass().getMethod("cleaner");
+                cleaner.setAccessible(true);
+
+                Object clean = cleaner.invoke(buf);
+
+                if(clean != null) {
+                    clean.getClass().getMethod("clean").invoke(clean);
+                }
+            }
+
+            catch(ReflectiveOperationException | RuntimeException e2) {}
+        }
+    }
+
+    /**
+     * Retrieves the key of a media file, generating it on first use.
+     * @param fileName the file name of the media file
+     * @return the key
+     */
+    private long keyOf(String fileName) {
+        Long key = keys.get(fileName);
+
+        if(key == null) {
+            key = key(fileName);
+
+            keys.put(fileName, key);
+        }
+
+        return key;
+    }
+
+    /**
+     * Checks if a thumbnail can be stored in a tile.
+     * @param thumb the thumbnail
+     * @param tileWidth the width of each tile
+     * @param tileHeight the height of each tile
+     * @return true if the thumbnail fits
+     */
+    private static boolean fits(PImage thumb, int tileWidth, int tileHeight) {
+        return thumb != null && thumb.width <= tileWidth &&
+            thumb.height <= tileHeight;
+    }
+
+    /**
+     * Generates the key of a media file from its path, size and
+     *   modification time, using 64-bit FNV-1a.
+     * @param fileName the file name of the media file
+     * @return the key
+     */
+    private static long key(String fileName) {
+        long length = 0, modified = 0;
+
+        //size and time in a single stat
+        try {
+            BasicFileAttributes attrs = Files.readAttributes(
+                Paths.get(fileName), BasicFileAttributes.class);
+
+            length = attrs.size();
+            modified = attrs.lastModifiedTime().toMillis();
+        }
+
+        catch(IOException | RuntimeException e) {}
+
+        String key = fileName + '\n' + length + '\n' + modified;
+
+        long hash = 0xcbf29ce484222325L;
+        for(int i = 0; i < key.length(); i++) {
+            hash ^= key.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+
+        return hash;
+    }
+}
@@ -0,0 +1,352 @@
+/**
+ * @file ThumbnailPrefetcher.java
+ * @description Warms the thumbnails of pages and directories the user is
+ *   likely to visit next on a low priority background thread.
+ */
+
+package quickshow;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+import processing.core.PImage;
+
+public class ThumbnailPrefetcher {
+    /**
+     * Generates the thumbnail of an image file.
+     */
+    public interface ThumbLoader {
+        /**
+         * Generates a thumbnail. Called from the prefetch thread.
+         * @param path the path of the image file
+         * @return the thumbnail, or null if the image could not be loaded
+         */
+        PImage load(String path);
+    }
+
+    /**
+     * A prefetched page thumbnail.
+     */
+    public static final class Result {
+        public final int index;
+        public final String path;
+        public final PImage thumb;
+
+        private final int generation;
+
+        /**
+         * Class constructor.
+         * @param generation the generation the request was made in
+         * @param index the thumbnail index
+         * @param path the path of the image file
+         * @param thumb the thumbnail
+         */
+        private Result(int generation, int index, String path, PImage thumb) {
+            this.generation = generation;
+            this.index = index;
+            this.path = path;
+            this.thumb = thumb;
+        }
+    }
+
+    /**
+     * A prefetched directory listing.
+     */
+    private static final class CachedListing {
+        private final DirectoryScanner.Listing listing;
+
+        //modification time of the directory when it was scanned
+        private final long modified;
+
+        /**
+         * Class constructor.
+         * @param listing the Listing of the directory
+         * @param modified the modification time of the directory
+         */
+        private CachedListing(DirectoryScanner.Listing listing,
+            long modified)
+        {
+            this.listing = listing;
+            this.modified = modified;
+        }
+    }
+
+    private boolean debug;
+
+    private DirectoryScanner scanner;
+    private ThumbLoader loader;
+
+    private ExecutorService worker;
+
+    //prefetch jobs; only touched by the animation thread
+    private ArrayList<Future<?>> pagePending, dirPending;
+
+    private ConcurrentLinkedQueue<Result> finished;
+
+    //most recently prefetched listings, least recently used first
+    private final LinkedHashMap<String, CachedListing> listings;
+
+    //incremented whenever outstanding page thumbnails become stale
+    private volatile int pageGeneration = 0;
+
+    //incremented whenever outstanding directory prefetches become stale
+    private volatile int dirGeneration = 0;
+
+    private int listingHits = 0, listingMisses = 0;
+
+    //maximum number of cached directory listings
+    private static final int MAX_LISTINGS = 8;
+
+    //number of image thumbnails warmed per prefetched directory
+    private static final int DIR_THUMBS = 20;
+
+    /**
+     * Class constructor.
+     * @param scanner the DirectoryScanner listing prefetched directories
+     * @param loader the ThumbLoader generating the thumbnails
+     * @param debug whether debug statements are enabled
+     */
+    public ThumbnailPrefetcher(DirectoryScanner scanner, ThumbLoader loader,
+        boolean debug)
+    {
+        this.scanner = scanner;
+        this.loader = loader;
+        this.debug = debug;
+
+        pagePending = new ArrayList<Future<?>>();
+        dirPending = new ArrayList<Future<?>>();
+        finished = new ConcurrentLinkedQueue<Result>();
+
+        listings = new LinkedHashMap<String, CachedListing>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(
+                Map.Entry<String, CachedListing> eldest)
+            {
+                return size() > MAX_LISTINGS;
+            }
+        };
+
+        //prefetching only uses time left over by the interactive threads
+        worker = Executors.newSingleThreadExecutor(new ThreadFactory() {
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "quickshow-prefetch");
+
+                thread.setDaemon(true);
+                thread.setPriority(Thread.MIN_PRIORITY);
+
+                return thread;
+            }
+        });
+    }
+
+    /**
+     * Queues the image thumbnails of a page.
+     * @param indices the thumbnail indices
+     * @param paths the paths of the image files
+     */
+    public void prefetchPage(final int[] indices, final String[] paths) {
+        final int gen = pageGeneration;
+
+        forget(pagePending);
+
+        pagePending.add(worker.submit(new Runnable() {
+            public void run() {
+                for(int i = 0; i < paths.length; i++) {
+                    if(gen != pageGeneration) {
+                        return;
+                    }
+
+                    finished.add(new Result(gen, indices[i], paths[i],
+                        loader.load(paths[i])));
+                }
+            }
+        }));
+    }
+
+    /**
+     * Queues a directory to be listed, and optionally the image thumbnails
+     *   of its first page to be stored.
+     * @param dir the path of the directory
+     * @param warmThumbs whether image thumbnails are warmed
+     */
+    public void prefetchDir(final String dir, final boolean warmThumbs) {
+        final int gen = dirGeneration;
+
+        forget(dirPending);
+
+        dirPending.add(worker.submit(new Runnable() {
+            public void run() {
+                if(gen != dirGeneration) {
+                    return;
+                }
+
+                DirectoryScanner.Listing listing;
+
+                synchronized(listings) {
+                    CachedListing cached = listings.get(dir);
+
+                    listing = (cached != null &&
+                        cached.modified == new File(dir).lastModified() ?
+                        cached.listing : null);
+                }
+
+                if(listing == null) {
+                    long modified = new File(dir).lastModified();
+
+                    listing = scanner.scan(dir);
+
+                    if(listing == null) {
+                        return;
+                    }
+
+                    synchronized(listings) {
+                        listings.put(dir, new CachedListing(listing,
+                            modified));
+                    }
+                }
+
+                if(!warmThumbs) {
+                    return;
+                }
+
+                int count = 0;
+
+                //thumbnails land in the ThumbnailStore
+                for(String name : listing.images) {
+                    if(gen != dirGeneration || count++ == DIR_THUMBS) {
+                        return;
+                    }
+
+                    loader.load(dir + File.separatorChar + name);
+                }
+            }
+        }));
+    }
+
+    /**
+     * Retrieves the prefetched listing of a directory. Listings of
+     *   directories modified since they were prefetched are discarded.
+     * @param dir the path of the directory
+     * @return a Listing object, or null if none is current
+     */
+    public DirectoryScanner.Listing getListing(String dir) {
+        CachedListing cached;
+
+        synchronized(listings) {
+            cached = listings.remove(dir);
+        }
+
+        if(cached != null && cached.modified == new File(dir).lastModified()) {
+            listingHits++;
+
+            return cached.listing;
+        }
+
+        listingMisses++;
+
+        return null;
+    }
+
+    /**
+     * Retrieves the next prefetched page thumbnail. Thumbnails requested
+     *   before the last call to cancelPages() are discarded.
+     * @return a Result object, or null if none are ready
+     */
+    public Result poll() {
+        Result result;
+
+        while((result = finished.poll()) != null) {
+            if(result.generation == pageGeneration) {
+                return result;
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Cancels all outstanding page thumbnails.
+     */
+    public void cancelPages() {
+        pageGeneration++;
+
+        cancel(pagePending);
+    }
+
+    /**
+     * Cancels all outstanding directory prefetches. Listings already
+     *   prefetched are kept.
+     */
+    public void cancelDirs() {
+        dirGeneration++;
+
+        cancel(dirPending);
+    }
+
+    /**
+     * Retrieves the number of directory changes served by a prefetched
+     *   listing.
+     * @return integer
+     */
+    public int getListingHits() {
+        return listingHits;
+    }
+
+    /**
+     * Retrieves the number of directory changes that had to be scanned.
+     * @return integer
+     */
+    public int getListingMisses() {
+        return listingMisses;
+    }
+
+    /**
+     * Stops the prefetch thread.
+     */
+    public void shutdown() {
+        worker.shutdownNow();
+        pagePending.clear();
+        dirPending.clear();
+        finished.clear();
+    }
+
+    /**
+     * Cancels a list of prefetch jobs.
+     * @param jobs the jobs to cancel
+     */
+    private void cancel(ArrayList<Future<?>> jobs) {
+        for(Future<?> job : jobs) {
+            job.cancel(false);
+        }
+
+        if(debug && !jobs.isEmpty()) {
+            Quickshow.println("prefetches cancelled: " + jobs.size());
+        }
+
+        jobs.clear();
+    }
+
+    /**
+     * Removes finished jobs from a list of prefetch jobs.
+     * @param jobs the jobs
+     */
+    private static void forget(ArrayList<Future<?>> jobs) {
+        Iterator<Future<?>> iter = jobs.iterator();
+
+        while(iter.hasNext()) {
+            if(iter.next().isDone()) {
+                iter.remove();
+            }
+        }
+    }
+}
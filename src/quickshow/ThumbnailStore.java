@@ -0,0 +1,268 @@
+/**
+ * @file ThumbnailStore.java
+ * @description A persistent on-disk store for generated thumbnails, keyed by
+ *   canonical path, file size and modification time.
+ */
+
+package quickshow;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+
+import javax.imageio.ImageIO;
+
+import processing.core.PConstants;
+import processing.core.PImage;
+
+public class ThumbnailStore {
+    private boolean debug;
+
+    private File dir;
+
+    private long budget;
+    private long usedBytes = -1;
+
+    private int hits = 0, misses = 0;
+
+    private static final String EXT = ".png";
+
+    /**
+     * Class constructor.
+     * @param dir the directory holding the stored thumbnails
+     * @param budget the maximum total size of the stored thumbnails in bytes
+     * @param debug whether debug statements are enabled
+     */
+    public ThumbnailStore(File dir, long budget, boolean debug) {
+        this.dir = dir;
+        this.budget = budget;
+        this.debug = debug;
+
+        if(!dir.isDirectory() && !dir.mkdirs() && debug) {
+            Quickshow.println("could not create thumbnail store " + dir);
+        }
+    }
+
+    /**
+     * Retrieves the stored thumbnail of a media file. Thumbnails of files
+     *   that have since been modified are not returned.
+     * @param fileName the file name of the media file
+     * @return the thumbnail, or null if none is stored
+     */
+    public PImage get(String fileName) {
+        File entry = entryFile(fileName);
+        BufferedImage image = null;
+
+        if(entry != null && entry.isFile()) {
+            try {
+                image = ImageIO.read(entry);
+            }
+
+            catch(IOException e) {
+                if(debug) {
+                    e.printStackTrace();
+                }
+            }
+        }
+
+        synchronized(this) {
+            if(image == null) {
+                misses++;
+
+                return null;
+            }
+
+            hits++;
+        }
+
+        //most recently used entries are evicted last
+        entry.setLastModified(System.currentTimeMillis());
+
+        return ImageDecoder.toPImage(image);
+    }
+
+    /**
+     * Stores the thumbnail of a media file.
+     * @param fileName the file name of the media file
+     * @param thumb the thumbnail
+     */
+    public void put(String fileName, PImage thumb) {
+        File entry = entryFile(fileName);
+
+        if(entry == null || thumb == null) {
+            return;
+        }
+
+        boolean alpha = thumb.format == PConstants.ARGB;
+        BufferedImage image = new BufferedImage(thumb.width, thumb.height,
+            alpha ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB);
+
+        thumb.loadPixels();
+        image.setRGB(0, 0, thumb.width, thumb.height, thumb.pixels, 0,
+            thumb.width);
+
+        //write to a temporary file so readers never see a partial entry
+        File tmp = new File(dir, entry.getName() + "." +
+            Thread.currentThread().getId() + ".tmp");
+
+        try {
+            if(!ImageIO.write(image, "png", tmp)) {
+                return;
+            }
+
+            long oldLength = entry.length();
+
+            if(!tmp.renameTo(entry)) {
+                entry.delete();
+
+                if(!tmp.renameTo(entry)) {
+                    tmp.delete();
+
+                    return;
+                }
+            }
+
+            added(entry.length() - oldLength);
+        }
+
+        catch(IOException e) {
+            tmp.delete();
+
+            if(debug) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Retrieves the number of thumbnails found in the store.
+     * @return integer
+     */
+    public synchronized int getHits() {
+        return hits;
+    }
+
+    /**
+     * Retrieves the number of thumbnails not found in the store.
+     * @return integer
+     */
+    public synchronized int getMisses() {
+        return misses;
+    }
+
+    /**
+     * Determines the store file of a media file.
+     * @param fileName the file name of the media file
+     * @return the store file, or null if the media file does not exist
+     */
+    private File entryFile(String fileName) {
+        File file = new File(fileName);
+
+        if(!file.isFile()) {
+            return null;
+        }
+
+        try {
+            String key = file.getCanonicalPath() + '\n' + file.length() +
+                '\n' + file.lastModified();
+
+            return new File(dir, hash(key) + EXT);
+        }
+
+        catch(IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Records newly written bytes and evicts the least recently used
+     *   thumbnails if the store exceeds its budget.
+     * @param bytes the change in stored size
+     */
+    private synchronized void added(long bytes) {
+        File[] entries;
+
+        if(usedBytes < 0) {
+            usedBytes = 0;
+
+            entries = listEntries();
+            for(File entry : entries) {
+                usedBytes += entry.length();
+            }
+        }
+
+        else {
+            usedBytes += bytes;
+        }
+
+        if(usedBytes <= budget) {
+            return;
+        }
+
+        entries = listEntries();
+        Arrays.sort(entries, new Comparator<File>() {
+            public int compare(File a, File b) {
+                return Long.compare(a.lastModified(), b.lastModified());
+            }
+        });
+
+        //leave some headroom so eviction does not run on every write
+        int i = 0;
+        long length;
+        while(usedBytes > budget * 9 / 10 && i < entries.length) {
+            length = entries[i].length();
+
+            if(entries[i].delete()) {
+                usedBytes -= length;
+            }
+
+            i++;
+        }
+
+        if(debug) {
+            Quickshow.println("thumbnail store evicted " + i + " entries");
+        }
+    }
+
+    /**
+     * Lists all stored thumbnails.
+     * @return an array of store files
+     */
+    private File[] listEntries() {
+        File[] entries = dir.listFiles(new java.io.FilenameFilter() {
+            public boolean accept(File parent, String name) {
+                return name.endsWith(EXT);
+            }
+        });
+
+        return (entries == null ? new File[0] : entries);
+    }
+
+    /**
+     * Generates a hexadecimal SHA-1 digest.
+     * @param key the string to digest
+     * @return the digest string
+     */
+    static String hash(String key) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-1")
+                .digest(key.getBytes(Charset.forName("UTF-8")));
+
+            StringBuilder build = new StringBuilder(digest.length * 2);
+            for(byte b : digest) {
+                build.append(String.format("%02x", b & 0xff));
+            }
+
+            return build.toString();
+        }
+
+        catch(NoSuchAlgorithmException e) {
+            return Integer.toHexString(key.hashCode());
+        }
+    }
+}
@@ -0,0 +1,286 @@
+/**
+ * @file TransitionCompositor.java
+ * @description Composites slide show transition frames into preallocated
+ *   buffers, so that transitions allocate no memory once started. Large
+ *   frames are blended in bands of rows on a fork-join pool.
+ */
+
+package quickshow;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import processing.core.PApplet;
+import processing.core.PConstants;
+import processing.core.PImage;
+
+public class TransitionCompositor {
+    /**
+     * A transition between two slides.
+     */
+    public interface Transition {
+        /**
+         * Retrieves the length of the transition.
+         * @return the length in seconds
+         */
+        float getDuration();
+
+        /**
+         * Retrieves the easing table timing the transition.
+         * @return one of the tables in Transitions
+         */
+        int[] getEasing();
+
+        /**
+         * Prepares the transition for a frame size. Called on the animation
+         *   thread before each transition begins.
+         * @param width the width of the frames
+         * @param height the height of the frames
+         */
+        void prepare(int width, int height);
+
+        /**
+         * Blends a range of rows of the two slides into the output frame.
+         *   Called concurrently for disjoint ranges of the same frame.
+         * @param from the opaque pixels of the outgoing slide
+         * @param to the opaque pixels of the incoming slide
+         * @param out the pixels of the output frame
+         * @param width the width of the frames
+         * @param height the height of the frames
+         * @param weight the eased progress, from 0 to 256
+         * @param y0 the first row to blend
+         * @param y1 the row after the last row to blend
+         */
+        void blend(int[] from, int[] to, int[] out, int width, int height,
+            int weight, int y0, int y1);
+    }
+
+    /**
+     * A band of rows blended by a pool thread.
+     */
+    private final class Band extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final int y0, y1;
+
+        /**
+         * Class constructor.
+         * @param y0 the first row of the band
+         * @param y1 the row after the last row of the band
+         */
+        private Band(int y0, int y1) {
+            this.y0 = y0;
+            this.y1 = y1;
+        }
+
+        protected void compute() {
+            transition.blend(from, to, frame.pixels, width, height, weight,
+                y0, y1);
+        }
+    }
+
+    private int width, height;
+
+    //opaque color shown around and behind the slides
+    private int background;
+
+    //window sized opaque copies of the outgoing and incoming slides
+    private int[] from, to;
+
+    //the composited frame; its pixels are written in place
+    private PImage frame;
+
+    //the incoming slide currently flattened into to
+    private PImage toSource = null;
+
+    //the current transition and its eased progress, read by the bands
+    private Transition transition = null;
+    private int weight = 0;
+
+    private ForkJoinPool pool;
+
+    //the bands of rows, reused for every frame
+    private Band[] bands;
+    private RecursiveAction blendAll;
+
+    //frames smaller than this many pixels are blended on the calling thread
+    private static final int PARALLEL_PIXELS = 1 << 16;
+
+    /**
+     * Class constructor.
+     * @param parent the Quickshow object
+     * @param width the width of the window
+     * @param height the height of the window
+     * @param background the background color of the window
+     */
+    public TransitionCompositor(PApplet parent, int width, int height,
+        int background)
+    {
+        this.width = width;
+        this.height = height;
+        this.background = background | 0xff000000;
+
+        from = new int[width * height];
+        to = new int[width * height];
+
+        frame = parent.createImage(width, height, PConstants.RGB);
+        frame.loadPixels();
+
+        pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors(),
+            new ForkJoinPool.ForkJoinWorkerThreadFactory() {
+                //workers may be started from any thread
+                private AtomicInteger count = new AtomicInteger();
+
+                public ForkJoinWorkerThread newThread(ForkJoinPool pool) {
+                    ForkJoinWorkerThread thread =
+                        new ForkJoinWorkerThread(pool) {};
+
+                    thread.setName("quickshow-blend-" +
+                        count.getAndIncrement());
+                    thread.setDaemon(true);
+
+                    return thread;
+                }
+            }, null, false);
+
+        //a few bands per thread, so that uneven rows balance out
+        int numBands = Math.max(1,
+            Math.min(height, pool.getParallelism() * 4));
+
+        bands = new Band[numBands];
+
+        for(int i = 0; i < numBands; i++) {
+            bands[i] = new Band(height * i / numBands,
+                height * (i + 1) / numBands);
+        }
+
+        blendAll = new RecursiveAction() {
+            private static final long serialVersionUID = 1L;
+
+            protected void compute() {
+                invokeAll(bands);
+            }
+        };
+    }
+
+    /**
+     * Begins a transition from the outgoing slide. Transparent pixels are
+     *   flattened onto the background here, once per transition.
+     * @param outgoing the slide being replaced, drawn centered
+     * @param transition the Transition to composite
+     */
+    public void begin(PImage outgoing, Transition transition) {
+        flatten(outgoing, from);
+
+        toSource = null;
+
+        this.transition = transition;
+        transition.prepare(width, height);
+    }
+
+    /**
+     * Composites a frame of the current transition.
+     * @param incoming the slide being shown, drawn centered
+     * @param progress the transition progress, from 0 to 1
+     * @return the composited window sized frame, reused by later calls
+     */
+    public PImage render(PImage incoming, float progress) {
+        prepare(incoming);
+
+        int[] easing = transition.getEasing();
+
+        weight = easing[(int)(Math.min(Math.max(progress, 0f), 1f) *
+            (easing.length - 1))];
+
+        if(width * height < PARALLEL_PIXELS || pool.getParallelism() == 1) {
+            transition.blend(from, to, frame.pixels, width, height, weight,
+                0, height);
+        }
+
+        else {
+            for(Band band : bands) {
+                band.reinitialize();
+            }
+
+            blendAll.reinitialize();
+
+            pool.invoke(blendAll);
+        }
+
+        frame.updatePixels();
+
+        return frame;
+    }
+
+    /**
+     * Stops the blending threads.
+     */
+    public void shutdown() {
+        pool.shutdown();
+    }
+
+    /**
+     * Flattens the incoming slide unless it is already flattened.
+     * @param incoming the slide being shown
+     */
+    private void prepare(PImage incoming) {
+        if(incoming != toSource) {
+            flatten(incoming, to);
+
+            toSource = incoming;
+        }
+    }
+
+    /**
+     * Draws a slide centered on the background into a window sized buffer,
+     *   blending transparent pixels with the background.
+     * @param src the slide
+     * @param dest the buffer
+     */
+    private void flatten(PImage src, int[] dest) {
+        Arrays.fill(dest, background);
+
+        if(src == null || src.width <= 0 || src.height <= 0) {
+            return;
+        }
+
+        src.loadPixels();
+
+        int left = (width - src.width) / 2, top = (height - src.height) / 2;
+
+        //part of the slide inside the window
+        int x0 = Math.max(0, -left), x1 = Math.min(src.width, width - left);
+        int y0 = Math.max(0, -top), y1 = Math.min(src.height, height - top);
+
+        boolean alpha = src.format == PConstants.ARGB;
+        int bgRB = background & 0xff00ff, bgG = background & 0x00ff00;
+        int p, a, ia, row;
+
+        for(int y = y0; y < y1; y++) {
+            row = (y + top) * width + left;
+
+            for(int x = x0; x < x1; x++) {
+                p = src.pixels[y * src.width + x];
+                a = (alpha ? p >>> 24 : 0xff);
+
+                if(a == 0xff) {
+                    dest[row + x] = p | 0xff000000;
+                }
+
+                else {
+                    a += a >> 7;
+                    ia = 256 - a;
+
+                    dest[row + x] = 0xff000000 |
+                        ((((p & 0xff00ff) * a + bgRB * ia) >>> 8) &
+                            0xff00ff) |
+                        ((((p & 0x00ff00) * a + bgG * ia) >>> 8) &
+                            0x00ff00);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,248 @@
+/**
+ * @file Transitions.java
+ * @description The slide show transitions and the easing tables they are
+ *   timed by.
+ */
+
+package quickshow;
+
+import java.util.Random;
+
+public final class Transitions {
+    //number of progress steps in an easing table
+    public static final int EASING_STEPS = 1024;
+
+    //easing tables mapping progress steps to weights from 0 to 256
+    public static final int[] LINEAR = easing(0);
+    public static final int[] EASE_IN_OUT = easing(1);
+    public static final int[] EASE_OUT = easing(2);
+
+    /**
+     * Cross-fades from the outgoing slide to the incoming one.
+     */
+    public static final class Fade implements TransitionCompositor.Transition {
+        public float getDuration() {
+            return 25f / 24f;
+        }
+
+        public int[] getEasing() {
+            return LINEAR;
+        }
+
+        public void prepare(int width, int height) {}
+
+        public void blend(int[] from, int[] to, int[] out, int width,
+            int height, int weight, int y0, int y1)
+        {
+            //weight of the outgoing slide out of 256
+            int a = 256 - weight;
+            int f, t;
+
+            for(int i = y0 * width; i < y1 * width; i++) {
+                f = from[i];
+                t = to[i];
+
+                out[i] = 0xff000000 |
+                    ((((f & 0xff00ff) * a + (t & 0xff00ff) * weight) >>> 8) &
+                        0xff00ff) |
+                    ((((f & 0x00ff00) * a + (t & 0x00ff00) * weight) >>> 8) &
+                        0x00ff00);
+            }
+        }
+    }
+
+    /**
+     * Slides the outgoing slide off the window, uncovering the incoming one.
+     */
+    public static final class Slide implements TransitionCompositor.Transition
+    {
+        private int dirX = 1, dirY = 0;
+
+        /**
+         * Sets the direction the outgoing slide moves in.
+         * @param dirX the horizontal direction, -1, 0 or 1
+         * @param dirY the vertical direction, -1, 0 or 1
+         */
+        public void setDirection(int dirX, int dirY) {
+            this.dirX = dirX;
+            this.dirY = dirY;
+        }
+
+        public float getDuration() {
+            return 37.5f / 24f;
+        }
+
+        public int[] getEasing() {
+            return EASE_IN_OUT;
+        }
+
+        public void prepare(int width, int height) {}
+
+        public void blend(int[] from, int[] to, int[] out, int width,
+            int height, int weight, int y0, int y1)
+        {
+            //the slide travels one and a half times the window size
+            int dx = dirX * (weight * 3 * width / 512);
+            int dy = dirY * (weight * 3 * height / 512);
+
+            //columns of the outgoing slide still inside the window
+            int x0 = Math.max(0, dx), x1 = Math.min(width, width + dx);
+
+            for(int y = y0; y < y1; y++) {
+                System.arraycopy(to, y * width, out, y * width, width);
+
+                if(x0 < x1 && y - dy >= 0 && y - dy < height) {
+                    System.arraycopy(from, (y - dy) * width + x0 - dx, out,
+                        y * width + x0, x1 - x0);
+                }
+            }
+        }
+    }
+
+    /**
+     * Uncovers the incoming slide from left to right behind a moving edge.
+     */
+    public static final class Wipe implements TransitionCompositor.Transition {
+        public float getDuration() {
+            return 30f / 24f;
+        }
+
+        public int[] getEasing() {
+            return EASE_IN_OUT;
+        }
+
+        public void prepare(int width, int height) {}
+
+        public void blend(int[] from, int[] to, int[] out, int width,
+            int height, int weight, int y0, int y1)
+        {
+            int edge = weight * width / 256;
+
+            for(int y = y0; y < y1; y++) {
+                System.arraycopy(to, y * width, out, y * width, edge);
+                System.arraycopy(from, y * width + edge, out, y * width + edge,
+                    width - edge);
+            }
+        }
+    }
+
+    /**
+     * Grows the incoming slide from the center of the window over the
+     *   outgoing one.
+     */
+    public static final class Zoom implements TransitionCompositor.Transition {
+        public float getDuration() {
+            return 30f / 24f;
+        }
+
+        public int[] getEasing() {
+            return EASE_OUT;
+        }
+
+        public void prepare(int width, int height) {}
+
+        public void blend(int[] from, int[] to, int[] out, int width,
+            int height, int weight, int y0, int y1)
+        {
+            //size and position of the scaled incoming slide
+            int w = weight * width / 256, h = weight * height / 256;
+            int left = (width - w) / 2, top = (height - h) / 2;
+
+            //horizontal source step in 16.16 fixed point
+            int step = (w > 0 ? (width << 16) / w : 0);
+            int row, src, sx;
+
+            for(int y = y0; y < y1; y++) {
+                row = y * width;
+
+                if(w == 0 || h == 0 || y < top || y >= top + h) {
+                    System.arraycopy(from, row, out, row, width);
+
+                    continue;
+                }
+
+                System.arraycopy(from, row, out, row, left);
+                System.arraycopy(from, row + left + w, out, row + left + w,
+                    width - left - w);
+
+                src = (y - top) * height / h * width;
+                sx = step >> 1;
+
+                for(int x = row + left; x < row + left + w; x++) {
+                    out[x] = to[src + (sx >> 16)];
+                    sx += step;
+                }
+            }
+        }
+    }
+
+    /**
+     * Replaces the outgoing slide with the incoming one pixel by pixel in a
+     *   fixed random order.
+     */
+    public static final class Dissolve implements
+        TransitionCompositor.Transition
+    {
+        //the weight at which each pixel switches, from 0 to 255
+        private byte[] noise = null;
+
+        public float getDuration() {
+            return 30f / 24f;
+        }
+
+        public int[] getEasing() {
+            return LINEAR;
+        }
+
+        public void prepare(int width, int height) {
+            if(noise == null || noise.length != width * height) {
+                noise = new byte[width * height];
+
+                new Random(0x5eed).nextBytes(noise);
+            }
+        }
+
+        public void blend(int[] from, int[] to, int[] out, int width,
+            int height, int weight, int y0, int y1)
+        {
+            for(int i = y0 * width; i < y1 * width; i++) {
+                out[i] = ((noise[i] & 0xff) < weight ? to[i] : from[i]);
+            }
+        }
+    }
+
+    private Transitions() {}
+
+    /**
+     * Generates an easing table.
+     * @param kind 0 for linear, 1 for ease in and out, 2 for ease out
+     * @return the table of weights, with EASING_STEPS + 1 entries
+     */
+    private static int[] easing(int kind) {
+        int[] table = new int[EASING_STEPS + 1];
+        double t, eased;
+
+        for(int i = 0; i <= EASING_STEPS; i++) {
+            t = (double)i / EASING_STEPS;
+
+            switch(kind) {
+            case 1:
+                eased = t * t * (3 - 2 * t);
+
+                break;
+
+            case 2:
+                eased = 1 - (1 - t) * (1 - t) * (1 - t);
+
+                break;
+
+            default:
+                eased = t;
+            }
+
+            table[i] = (int)Math.round(eased * 256);
+        }
+
+        return table;
+    }
+}
@@ -0,0 +1,216 @@
+/**
+ * @file VideoHeaderReader.java
+ * @description Reads the duration and dimensions of video files from their
+ *   container headers without creating a playback pipeline.
+ */
+
+package quickshow;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.Charset;
+
+public final class VideoHeaderReader {
+    /**
+     * The properties read from a video file. Fields that could not be read
+     *   are left at zero.
+     */
+    public static final class Header {
+        public int width = 0;
+        public int height = 0;
+
+        //duration in seconds
+        public float duration = 0f;
+    }
+
+    private static final Charset LATIN_1 = Charset.forName("ISO-8859-1");
+
+    /**
+     * Class constructor. Not used.
+     */
+    private VideoHeaderReader() {}
+
+    /**
+     * Reads the properties of a video file. MP4 and QuickTime movie headers
+     *   and AVI main headers are recognized.
+     * @param fileName the file name of the video file
+     * @return a Header object, with zero fields if nothing could be read
+     */
+    public static Header read(String fileName) {
+        Header result = new Header();
+        RandomAccessFile file = null;
+
+        try {
+            file = new RandomAccessFile(fileName, "r");
+
+            byte[] magic = new byte[12];
+            file.readFully(magic);
+
+            String id = new String(magic, 0, 4, LATIN_1);
+            String box = new String(magic, 4, 4, LATIN_1);
+
+            if(id.equals("RIFF") &&
+                new String(magic, 8, 4, LATIN_1).equals("AVI "))
+            {
+                readAvi(file, result);
+            }
+
+            else if(box.equals("ftyp") || box.equals("moov") ||
+                box.equals("mdat") || box.equals("free") ||
+                box.equals("wide") || box.equals("skip") ||
+                box.equals("pnot"))
+            {
+                readBoxes(file, 0, file.length(), result);
+            }
+        }
+
+        catch(IOException | RuntimeException e) {}
+
+        finally {
+            if(file != null) {
+                try {
+                    file.close();
+                }
+
+                catch(IOException e) {}
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Reads the main header of an AVI file.
+     * @param file the video file, positioned after the RIFF header
+     * @param result the Header to fill
+     */
+    private static void readAvi(RandomAccessFile file, Header result)
+        throws IOException
+    {
+        //the header list is the first chunk of the file
+        if(!readId(file).equals("LIST")) {
+            return;
+        }
+
+        file.skipBytes(4);
+
+        if(!readId(file).equals("hdrl") || !readId(file).equals("avih")) {
+            return;
+        }
+
+        file.skipBytes(4);
+
+        long microSecPerFrame = readLittleInt(file) & 0xffffffffL;
+        file.skipBytes(12);
+        long totalFrames = readLittleInt(file) & 0xffffffffL;
+        file.skipBytes(12);
+
+        result.width = readLittleInt(file);
+        result.height = readLittleInt(file);
+        result.duration = totalFrames * microSecPerFrame / 1000000f;
+    }
+
+    /**
+     * Reads a sequence of MP4 or QuickTime boxes, descending into movie and
+     *   track boxes.
+     * @param file the video file
+     * @param start the position of the first box
+     * @param end the position of the end of the box sequence
+     * @param result the Header to fill
+     */
+    private static void readBoxes(RandomAccessFile file, long start,
+        long end, Header result) throws IOException
+    {
+        long pos = start, size;
+        int headerSize;
+        String type;
+
+        while(pos + 8 <= end) {
+            file.seek(pos);
+
+            size = file.readInt() & 0xffffffffL;
+            type = readId(file);
+            headerSize = 8;
+
+            //64-bit size
+            if(size == 1) {
+                size = file.readLong();
+                headerSize = 16;
+            }
+
+            //box extends to the end of the file
+            else if(size == 0) {
+                size = end - pos;
+            }
+
+            if(size < headerSize || pos + size > end) {
+                return;
+            }
+
+            if(type.equals("moov") || type.equals("trak")) {
+                readBoxes(file, pos + headerSize, pos + size, result);
+            }
+
+            else if(type.equals("mvhd")) {
+                int version = file.readUnsignedByte();
+                file.skipBytes(3);
+
+                long timeScale, duration;
+
+                if(version == 1) {
+                    file.skipBytes(16);
+                    timeScale = file.readInt() & 0xffffffffL;
+                    duration = file.readLong();
+                }
+
+                else {
+                    file.skipBytes(8);
+                    timeScale = file.readInt() & 0xffffffffL;
+                    duration = file.readInt() & 0xffffffffL;
+                }
+
+                if(timeScale > 0) {
+                    result.duration = (float)duration / timeScale;
+                }
+            }
+
+            //audio tracks have no dimensions, so use the first visual track
+            else if(type.equals("tkhd") && result.width == 0) {
+                int version = file.readUnsignedByte();
+                file.skipBytes(3);
+
+                //times, track ID and duration, then layer, volume and matrix
+                file.skipBytes((version == 1 ? 32 : 20) + 52);
+
+                //16.16 fixed point values
+                result.width = file.readInt() >>> 16;
+                result.height = file.readInt() >>> 16;
+            }
+
+            pos += size;
+        }
+    }
+
+    /**
+     * Reads a four character chunk identifier.
+     * @param file the video file
+     * @return the identifier as a String
+     */
+    private static String readId(RandomAccessFile file) throws IOException {
+        byte[] id = new byte[4];
+        file.readFully(id);
+
+        return new String(id, LATIN_1);
+    }
+
+    /**
+     * Reads a little endian 32-bit value.
+     * @param file the video file
+     * @return integer
+     */
+    private static int readLittleInt(RandomAccessFile file)
+        throws IOException
+    {
+        return Integer.reverseBytes(file.readInt());
+    }
+}
@@ -0,0 +1,412 @@
+/**
+ * @file VideoThumbnailService.java
+ * @description Grabs video thumbnails on a pool of background worker threads
+ *   and hands them back to the animation thread as they finish. The Movies
+ *   are created and disposed of on the animation thread, since both change
+ *   the methods the sketch calls every frame.
+ */
+
+package quickshow;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+import processing.core.PApplet;
+import processing.core.PImage;
+import processing.video.Movie;
+
+public class VideoThumbnailService {
+    /**
+     * A finished video thumbnail.
+     */
+    public static final class Result {
+        public final int index;
+        public final String path;
+
+        //null if no frame could be grabbed
+        public final PImage thumb;
+
+        private final int generation;
+
+        /**
+         * Class constructor.
+         * @param generation the generation the request was made in
+         * @param index the thumbnail index
+         * @param path the path of the video file
+         * @param thumb the thumbnail
+         */
+        private Result(int generation, int index, String path, PImage thumb) {
+            this.generation = generation;
+            this.index = index;
+            this.path = path;
+            this.thumb = thumb;
+        }
+    }
+
+    /**
+     * A Movie requested by a worker thread.
+     */
+    private static final class Pipeline {
+        private final String path;
+        private Movie movie = null;
+
+        //set under the lock of the Pipeline once the Movie is created or the
+        //worker stops waiting for it
+        private boolean done = false;
+
+        /**
+         * Class constructor.
+         * @param path the path of the video file
+         */
+        private Pipeline(String path) {
+            this.path = path;
+        }
+    }
+
+    private boolean debug;
+
+    private PApplet parent;
+    private ThumbnailStore thumbStore;
+
+    private ExecutorService workers;
+
+    //directory thumbnail jobs; only touched by the animation thread
+    private ArrayList<Future<?>> pending;
+
+    private ConcurrentLinkedQueue<Result> finished;
+
+    //Movies to create and dispose of on the animation thread
+    private ConcurrentLinkedQueue<Pipeline> opening;
+    private ConcurrentLinkedQueue<Movie> closing;
+
+    //incremented whenever outstanding directory thumbnails become stale
+    private volatile int generation = 0;
+
+    //position of the grabbed frame as a fraction of the video duration
+    private static final float SEEK_FRACTION = 0.1f;
+
+    //latest grabbed frame position in seconds
+    private static final float MAX_SEEK = 5f;
+
+    //longest wait for a decoded frame in milliseconds
+    private static final long FRAME_TIMEOUT = 5000;
+
+    //longest wait for the animation thread to create a Movie in milliseconds
+    private static final long OPEN_TIMEOUT = 5000;
+
+    /**
+     * Class constructor. Uses one worker per two processor cores, since each
+     *   worker runs its own decoding pipeline.
+     * @param parent the Quickshow object
+     * @param thumbStore the store receiving the generated thumbnails
+     * @param debug whether debug statements are enabled
+     */
+    public VideoThumbnailService(PApplet parent, ThumbnailStore thumbStore,
+        boolean debug)
+    {
+        this(parent, thumbStore, debug, Math.max(1, Math.min(4,
+            Runtime.getRuntime().availableProcessors() / 2)));
+    }
+
+    /**
+     * Class constructor. Must be called from the animation thread.
+     * @param parent the Quickshow object
+     * @param thumbStore the store receiving the generated thumbnails
+     * @param debug whether debug statements are enabled
+     * @param numWorkers the maximum number of concurrent pipelines
+     */
+    public VideoThumbnailService(PApplet parent, ThumbnailStore thumbStore,
+        boolean debug, int numWorkers)
+    {
+        this.parent = parent;
+        this.thumbStore = thumbStore;
+        this.debug = debug;
+
+        pending = new ArrayList<Future<?>>();
+        finished = new ConcurrentLinkedQueue<Result>();
+        opening = new ConcurrentLinkedQueue<Pipeline>();
+        closing = new ConcurrentLinkedQueue<Movie>();
+
+        workers = Executors.newFixedThreadPool(numWorkers,
+            new ThreadFactory() {
+                private int count = 0;
+
+                public Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r, "quickshow-video-" +
+                        (count++));
+
+                    thread.setDaemon(true);
+                    thread.setPriority(Thread.NORM_PRIORITY - 1);
+
+                    return thread;
+                }
+            }
+        );
+
+        //Movies are opened before each frame, even while the FileBrowser is
+        //not drawn
+        parent.registerMethod("pre", this);
+    }
+
+    /**
+     * Callback method run by the sketch before each frame. Creates at most
+     *   one requested Movie, so that a page of videos does not stall a single
+     *   frame, and disposes of the Movies the workers are done with.
+     */
+    public void pre() {
+        Pipeline pipeline = opening.poll();
+
+        if(pipeline != null) {
+            synchronized(pipeline) {
+                if(!pipeline.done) {
+                    try {
+                        Movie movie = new Movie(parent, pipeline.path);
+
+                        movie.play();
+                        movie.volume(0f);
+
+                        pipeline.movie = movie;
+                    }
+
+                    catch(RuntimeException e) {
+                        if(debug) {
+                            e.printStackTrace();
+                        }
+                    }
+
+                    pipeline.done = true;
+                    pipeline.notifyAll();
+                }
+            }
+        }
+
+        Movie movie;
+        while((movie = closing.poll()) != null) {
+            movie.stop();
+            movie.dispose();
+        }
+    }
+
+    /**
+     * Queues a video file for thumbnail generation.
+     * @param index the thumbnail index, or -1 for a video being loaded
+     *   directly, which is never cancelled
+     * @param path the path of the video file
+     */
+    public void submit(final int index, final String path) {
+        final int gen = generation;
+
+        Future<?> job = workers.submit(new Runnable() {
+            public void run() {
+                if(index >= 0 && gen != generation) {
+                    return;
+                }
+
+                finished.add(new Result(gen, index, path,
+                    generate(path, gen)));
+            }
+        });
+
+        if(index >= 0) {
+            //forget finished jobs
+            Iterator<Future<?>> iter = pending.iterator();
+            while(iter.hasNext()) {
+                if(iter.next().isDone()) {
+                    iter.remove();
+                }
+            }
+
+            pending.add(job);
+        }
+    }
+
+    /**
+     * Queues a video file for thumbnail generation into the ThumbnailStore
+     *   only. No Result is posted; the MediaItem of the video finds the
+     *   thumbnail in the store once it is generated.
+     * @param path the path of the video file
+     */
+    public void store(final String path) {
+        workers.submit(new Runnable() {
+            public void run() {
+                generate(path, generation);
+            }
+        });
+    }
+
+    /**
+     * Retrieves the next finished thumbnail. Thumbnails requested before the
+     *   last call to cancelAll() are discarded.
+     * @return a Result object, or null if none are ready
+     */
+    public Result poll() {
+        Result result;
+
+        while((result = finished.poll()) != null) {
+            if(result.index < 0 || result.generation == generation) {
+                return result;
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Cancels all outstanding directory thumbnails.
+     */
+    public void cancelAll() {
+        generation++;
+
+        for(Future<?> job : pending) {
+            job.cancel(false);
+        }
+
+        if(debug && !pending.isEmpty()) {
+            Quickshow.println("video thumbnails cancelled: " + pending.size());
+        }
+
+        pending.clear();
+    }
+
+    /**
+     * Stops all worker threads. Queued thumbnails are discarded.
+     */
+    public void shutdown() {
+        workers.shutdownNow();
+        pending.clear();
+        finished.clear();
+    }
+
+    /**
+     * Grabs, resizes and stores the thumbnail of a video.
+     * @param path the path of the video file
+     * @param gen the generation the request was made in
+     * @return the thumbnail, or null if no frame could be grabbed
+     */
+    private PImage generate(String path, int gen) {
+        PImage thumb = grab(path, gen);
+
+        if(thumb != null) {
+            int[] thumbDims = FileBrowser.newImageDims(thumb);
+            thumb.resize(thumbDims[0], thumbDims[1]);
+
+            thumbStore.put(path, thumb);
+        }
+
+        return thumb;
+    }
+
+    /**
+     * Grabs a frame a short way into a video, skipping the black or title
+     *   frames many videos begin with.
+     * @param path the path of the video file
+     * @param gen the generation the request was made in
+     * @return the frame, or null if none could be decoded in time
+     */
+    private PImage grab(String path, int gen) {
+        Movie movie = open(path);
+
+        if(movie == null) {
+            return null;
+        }
+
+        try {
+            if(!awaitFrame(movie, 0f)) {
+                return null;
+            }
+
+            PImage frame = movie.get();
+
+            float offset = Math.min(movie.duration() * SEEK_FRACTION,
+                MAX_SEEK);
+
+            if(offset > 0f && gen == generation) {
+                movie.jump(offset);
+
+                //frames decoded before the seek are skipped
+                if(awaitFrame(movie, offset * 0.5f)) {
+                    frame = movie.get();
+                }
+            }
+
+            return frame;
+        }
+
+        catch(RuntimeException e) {
+            if(debug) {
+                e.printStackTrace();
+            }
+
+            return null;
+        }
+
+        finally {
+            closing.add(movie);
+        }
+    }
+
+    /**
+     * Has the animation thread create and start a Movie, and waits for it.
+     * @param path the path of the video file
+     * @return the playing Movie, or null if it could not be created in time
+     */
+    private Movie open(String path) {
+        Pipeline pipeline = new Pipeline(path);
+        long deadline = System.currentTimeMillis() + OPEN_TIMEOUT;
+        long left;
+
+        opening.add(pipeline);
+
+        synchronized(pipeline) {
+            try {
+                while(!pipeline.done &&
+                    (left = deadline - System.currentTimeMillis()) > 0)
+                {
+                    pipeline.wait(left);
+                }
+            }
+
+            catch(InterruptedException e) {}
+
+            //a Movie not yet created is no longer wanted
+            pipeline.done = true;
+
+            return pipeline.movie;
+        }
+    }
+
+    /**
+     * Waits for the pipeline to decode a frame at or after a position.
+     * @param movie the Movie being decoded
+     * @param minTime the earliest acceptable frame position in seconds
+     * @return true if such a frame was read into the Movie
+     */
+    private boolean awaitFrame(Movie movie, float minTime) {
+        long deadline = System.currentTimeMillis() + FRAME_TIMEOUT;
+
+        while(System.currentTimeMillis() < deadline) {
+            if(movie.available()) {
+                movie.read();
+
+                if(movie.time() >= minTime) {
+                    return true;
+                }
+            }
+
+            try {
+                Thread.sleep(5);
+            }
+
+            catch(InterruptedException e) {
+                return false;
+            }
+        }
+
+        return false;
+    }
+}
@@ -6,15 +6,12 @@
 
 package quickshow;
 
-import java.util.Arrays;
 import java.util.ArrayList;
-import java.util.ListIterator;
 
 import processing.core.PConstants;
 import processing.core.PFont;
 import quickshow.datatypes.AudioItem;
 import ddf.minim.*;
-import ddf.minim.analysis.FFT;
 
 
 public class audioTimeline {
@@ -22,7 +19,7 @@ public class audioTimeline {
     private PFont font;
 
     //Generate the wave form image
-    private ArrayList<float[][]> spectraList;
+    private ArrayList<float[]> spectraList;
     private static final int timeLineWidth = 800;
     private static final int timeLineHeight = 78;
     private ArrayList <AudioItem> selectedSongs;
@@ -42,7 +39,7 @@ public class audioTimeline {
         
         selectedSongs = new ArrayList<AudioItem>();
 
-        spectraList = new ArrayList<float[][]>();
+        spectraList = new ArrayList<float[]>();
     }
 
     /**
@@ -62,77 +59,14 @@ public class audioTimeline {
         }
     }
 
-    /*
-     * Referenced from processing forums. Modified function to suit
-     * the needs of the application
-     */
     /**
-     * Generates the audio waveforms.
+     * Collects the waveform summaries of the selected songs.
      */
     private void generateWaveForms() {
-        ListIterator<AudioItem> songIter = selectedSongs.listIterator();
-        if(songIter.hasNext()) {
-            AudioSample audioClip;
-            int i,j;
-            float leftChannel[], leftSample[];
-            int fftSize = 1024;
-            int leftChunk, leftchunkSize;
-            int chunkStartIndex = 0;
-            FFT fft;
-            float leftSpectra[][];
-
-            spectraList.clear();
-
-            do {
-                //Will have to generate for all songs, but choose at index 0 for now
-                audioClip = songIter.next().getAudioSample();
-
-                fft = new FFT( fftSize, audioClip.sampleRate());
-
-                //Get audio sample from both channels
-                //if(!(audioClip.getChannel(AudioSample.LEFT) == null))
-                leftChannel = audioClip.getChannel(AudioSample.LEFT);
-
-                //Allocate array for both channel sample
-                leftSample = new float[fftSize];
-
-                //Calculate chunks for both channel
-                leftChunk = (leftChannel.length/fftSize + 1);
-                //Allocate the spectra for both channels
-
-                leftSpectra = new float[leftChunk][fftSize/2];
-
-                //generate waveform data for both channels
-                for(i = 0; i < leftChunk; ++i) {
-                    chunkStartIndex = i * fftSize;
-
-                    // the chunk size will always be fftSize, except for the
-                    // last chunk, which will be however many samples are left in source
-                    leftchunkSize = Math.min(leftChannel.length - chunkStartIndex, fftSize);
-                    // copy first chunk into our analysis array
-                    System.arraycopy( leftChannel, // source of the copy
-                            chunkStartIndex, // index to start in the source
-                            leftSample, // destination of the copy
-                            0, // index to copy to
-                            leftchunkSize // how many samples to copy
-                            );
-
-                    // if the chunk was smaller than the fftSize, we need to pad the analysis buffer with zeroes
-                    if ( leftchunkSize < fftSize ){
-                        // we use a system call for this
-                        Arrays.fill( leftSample, leftchunkSize, leftSample.length - 1, 0.0f );
-                    }
-
-                    // now analyze this buffer
-                    fft.forward(leftSample);
-                    // and copy the resulting spectrum into our spectra array
-                    for(j = 0; j < 512; ++j) {
-                        leftSpectra[i][j] = fft.getBand(j);
-                    }
-                }
-
-                spectraList.add(leftSpectra);
-            } while(songIter.hasNext());
+        spectraList.clear();
+
+        for(AudioItem song : selectedSongs) {
+            spectraList.add(song.getWaveform().getLevels());
         }
     }
 
@@ -143,20 +77,13 @@ public class audioTimeline {
         if(index < spectraList.size()) {
             parent.stroke(0);
 
-            float[][] leftSpectra = spectraList.get(index);
-
-            float scaleMod = ((float) timeLineWidth / (float)leftSpectra.length);
+            float[] levels = spectraList.get(index);
 
-            int i;
-            float total;
+            float scaleMod = ((float) timeLineWidth / (float)levels.length);
 
-            for(int s = 0; s < leftSpectra.length; s++) {
-                for(total = 0f, i = 0; i < leftSpectra[s].length-1; i++){
-                    total += leftSpectra[s][i];
-                }
-                total = total / 120f;
-                parent.line((s*scaleMod) + 30,(bounds[1]+bounds[3])/2 + total,
-                            (s*scaleMod) + 30,(bounds[1]+bounds[3])/2 - total);
+            for(int s = 0; s < levels.length; s++) {
+                parent.line((s*scaleMod) + 30,(bounds[1]+bounds[3])/2 + levels[s],
+                            (s*scaleMod) + 30,(bounds[1]+bounds[3])/2 - levels[s]);
             }
         }
     }
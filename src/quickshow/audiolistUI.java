@@ -7,7 +7,6 @@
 package quickshow;
 
 import java.util.ArrayList;
-import java.util.ListIterator;
 
 import processing.data.IntList;
 import quickshow.datatypes.AudioItem;
@@ -29,10 +28,9 @@ public class audiolistUI {
     private final static int MAX_SONGS = 3;
     private final static String title = "Songs/Audio";
     private ArrayList<AudioItem> songList;
+    private MediaLibrary library;
     private IntList selectedIndex;
 
-    private int oldListSize;
-
     /**
      * Class constructor.
      * @param parent the instantiating Quickshow object
@@ -40,6 +38,7 @@ public class audiolistUI {
      */
     public audiolistUI(Quickshow parent, ControlP5 control){
         debug = parent.getDebugFlag();
+        library = parent.getLibrary();
 
         group = control.addGroup("AudioList").setLabel("");
         control.setFont(control.getFont().getFont(), 15);
@@ -98,35 +97,30 @@ public class audiolistUI {
             Quickshow.println("Size of fileList: " + fileList.size());
         }
 
-        //only add if items are not already in list
-        AudioItem item;
-        ListIterator<AudioItem> itemIter;
-        int i;
-        for(AudioItem vItem : fileList) {
-            itemIter = songList.listIterator();
-            i = 0;
-
-            while(itemIter.hasNext()) {
-                item = itemIter.next();
+        int first = songList.size(), index;
 
-                if(vItem.getFileName().equalsIgnoreCase(item.getFileName())) {
-                    break;
+        //only add if items are not already loaded
+        for(AudioItem vItem : fileList) {
+            if(library.add(vItem)) {
+                //songs loaded in parallel are put back into load order
+                index = MediaLibrary.orderedIndex(songList, vItem);
+                songList.add(index, vItem);
+
+                first = Math.min(first, index);
+
+                //selections follow the songs moved down
+                for(int i = 0; i < selectedIndex.size(); i++) {
+                    if(selectedIndex.get(i) >= index) {
+                        selectedIndex.add(i, 1);
+                    }
                 }
-
-                i++;
-            }
-
-            if(i == songList.size()) {
-                songList.add(vItem);
             }
         }
 
-        //Display the songs on the list
-        ListIterator<AudioItem> songIter = songList.listIterator(oldListSize);
-        while(songIter.hasNext()){
-            addToList(songIter.next());
+        //Display the songs on the list, including those moved down
+        for(int i = first; i < songList.size(); i++) {
+            setListItem(i);
         }
-        oldListSize = songList.size();
     }
 
 
@@ -143,10 +137,12 @@ public class audiolistUI {
      */
     //TODO Make sure to add more songs in the future and update the list
     /**
-     * Adds an item to the audio list.
-     * @param audio the AudioItem to add
+     * Displays an item of the song list in the audio list.
+     * @param index the index of the AudioItem in the song list
      */
-    private void addToList(AudioItem audio){
+    private void setListItem(int index){
+        AudioItem audio = songList.get(index);
+
         StringBuilder builder = new StringBuilder(audio.getAuthor() + " - "
             + audio.getTitle() + " - " + audio.getLength());
 
@@ -158,15 +154,20 @@ public class audiolistUI {
             Quickshow.println("Song being added: " + songDisplay);
         }
 
-        if(num_items > 25) {
-            list.addItem(songDisplay, num_items);
+        if(index >= num_items && index >= 25) {
+            list.addItem(songDisplay, index);
         }
 
         else {
-            list.getItem(num_items).setText(songDisplay);
+            list.getItem(index).setText(songDisplay);
         }
+
+        //a moved item takes the selection state of its new position
+        list.getItem(index).setColorBackground(
+            selectedIndex.hasValue(index) ? 0xff2299ff : 0xffff0000);
+
         //Adds the actual song
-        num_items++;
+        num_items = Math.max(num_items, index + 1);
     }
 
     /**
@@ -24,7 +24,7 @@ public class controlbuttonUI {
     private Button selectAllImages;
     private Button upButton;
     private Button downButton;
-    private Toggle shuffleToggle, transitionToggle;
+    private Toggle shuffleToggle, transitionToggle, mixToggle;
     private Button nextSlides;
     private Button prevSlides;
     private Button nextSong;
@@ -35,6 +35,7 @@ public class controlbuttonUI {
     private Button pageIndex;
     private Button timeLineIndex;
     private Button totalTime;
+    private Button loadStatus;
 
     private String indexString = "0 of 0";
     private static final String timeLineDefaultString = "0:00 - 0:00";
@@ -47,7 +48,7 @@ public class controlbuttonUI {
     public controlbuttonUI(ControlP5 control){
         mainUIGroup = control.addGroup("buttonUI").setLabel("");
 
-        lockControllers = new Controller[16];
+        lockControllers = new Controller[17];
 
         //For the entire slideshow
         lockControllers[0] = playButton = control.addButton("Play")
@@ -144,6 +145,15 @@ public class controlbuttonUI {
             .setGroup(mainUIGroup);
         totalTime.getCaptionLabel().alignX(ControlP5Constants.CENTER);
 
+        loadStatus = control.addButton("loadStatus")
+            .setPosition(190, 10)
+            .setSize(200, 15)
+            .setCaptionLabel("")
+            .setVisible(false)
+            .lock()
+            .setGroup(mainUIGroup);
+        loadStatus.getCaptionLabel().alignX(ControlP5Constants.CENTER);
+
         //Load media
         lockControllers[10] = loadMedia = control.addButton("Load Media")
             .setPosition(670, 10)
@@ -189,6 +199,15 @@ public class controlbuttonUI {
             .setCaptionLabel(" Fade Transition");
         transitionToggle.getCaptionLabel()
             .align(ControlP5Constants.RIGHT_OUTSIDE, ControlP5Constants.CENTER);
+
+        lockControllers[16] = mixToggle = control
+            .addToggle("mixToggle")
+            .setGroup(mainUIGroup)
+            .setPosition(220, 580)
+            .setSize(15, 15)
+            .setCaptionLabel(" Mixed Transitions");
+        mixToggle.getCaptionLabel()
+            .align(ControlP5Constants.RIGHT_OUTSIDE, ControlP5Constants.CENTER);
     }
 
     /**
@@ -246,6 +265,17 @@ public class controlbuttonUI {
         totalTime.setCaptionLabel(String.format("Total Time: %d:%02d", min, sec));
     }
 
+    /**
+     * Sets the background loading progress display.
+     * @param status the progress string, or an empty string if idle
+     */
+    public void setLoadStatus(String status) {
+        if(!status.equals(loadStatus.getCaptionLabel().getText())) {
+            loadStatus.setCaptionLabel(status);
+            loadStatus.setVisible(!status.isEmpty());
+        }
+    }
+
     /**
      * Sets the main UI element interactivity.
      * @param lock whether to lock the main UI elements
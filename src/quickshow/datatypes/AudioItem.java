@@ -6,17 +6,17 @@
 
 package quickshow.datatypes;
 
-import ddf.minim.AudioMetaData;
 import ddf.minim.AudioPlayer;
-import ddf.minim.AudioSample;
 import ddf.minim.Minim;
+import quickshow.AudioHeaderReader;
 
 public class AudioItem extends MediaItem {
-    private AudioPlayer audio;
+    private Minim minim;
+    private AudioPlayer audio = null;
     private String title;
     private String author;
     private int length;
-    private AudioSample sample;
+    private WaveformSummary waveform;
     private String time;
 
     /**
@@ -25,18 +25,19 @@ public class AudioItem extends MediaItem {
      * @param fileName the file name of the audio file to load
      */
     public AudioItem(Minim minim, String fileName) {
-        super(fileName);
+        super(fileName, MediaType.AUDIO);
 
-        audio = minim.loadFile(fileName);
+        this.minim = minim;
 
         //Need this to generate waveform in the UI
-        sample = minim.loadSample(fileName);
+        waveform = WaveformSummary.analyze(minim, fileName);
 
-        AudioMetaData meta = audio.getMetaData();
+        //the AudioPlayer is not needed until playback begins
+        AudioHeaderReader.Header meta = AudioHeaderReader.read(fileName);
 
-        title = (meta.title().trim().equals("") ? "N/A" : meta.title());
-        author = (meta.author().trim().equals("") ? "N/A" : meta.author());
-        length = meta.length()/1000;
+        title = (meta.title.equals("") ? "N/A" : meta.title);
+        author = (meta.author.equals("") ? "N/A" : meta.author);
+        length = meta.length/1000;
 
         int minutes = length/60;
         int seconds = length%60;
@@ -44,13 +45,53 @@ public class AudioItem extends MediaItem {
     }
 
     /**
-     * Retrieves the AudioPlayer object associated with the audio file.
-     * @return an AudioPlayer object
+     * Class constructor for an audio file whose properties are already
+     *   known. The audio file is not opened.
+     * @param minim the Minim object controlling the audio
+     * @param fileName the file name of the audio file
+     * @param title the title of the audio file
+     * @param author the author of the audio file
+     * @param length the length of the audio file in seconds
+     * @param waveform the waveform summary of the audio file
+     */
+    public AudioItem(Minim minim, String fileName, String title,
+        String author, int length, WaveformSummary waveform)
+    {
+        super(fileName, MediaType.AUDIO);
+
+        this.minim = minim;
+        this.title = title;
+        this.author = author;
+        this.length = length;
+        this.waveform = waveform;
+
+        time = String.format("%d:%02d", length/60, length%60);
+    }
+
+    /**
+     * Retrieves the AudioPlayer object associated with the audio file,
+     *   loading it if necessary.
+     * @return an AudioPlayer object, or null if the file could not be loaded
      */
-    public AudioPlayer getAudio() {
+    public synchronized AudioPlayer getAudio() {
+        if(audio == null) {
+            audio = minim.loadFile(getFileName());
+        }
+
         return audio;
     }
 
+    /**
+     * Closes the AudioPlayer object associated with the audio file. A new
+     *   one is loaded by the next call to getAudio().
+     */
+    public synchronized void releaseAudio() {
+        if(audio != null) {
+            audio.close();
+            audio = null;
+        }
+    }
+
     /**
      * Retrieves the author of the audio file.
      * @return the author as a String
@@ -84,10 +125,10 @@ public class AudioItem extends MediaItem {
     }
 
     /**
-     * Retrieves the AudioSample object associated with the audio file.
-     * @return an AudioSample object
+     * Retrieves the waveform summary of the audio file.
+     * @return a WaveformSummary object
      */
-    public AudioSample getAudioSample(){
-        return sample;
+    public WaveformSummary getWaveform(){
+        return waveform;
     }
 }
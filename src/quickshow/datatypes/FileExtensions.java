@@ -7,15 +7,23 @@
 package quickshow.datatypes;
 
 public final class FileExtensions {
-    public static final String[] IMG_EXT = {
-        "bmp", "jpg", "png", "gif"
-    };
+    public static final String[] IMG_EXT = MediaType.IMAGE.getExtensions();
 
-    public static final String[] VIDEO_EXT = {
-        "mov", "avi", "mpg", "mp4"
-    };
+    public static final String[] VIDEO_EXT = MediaType.VIDEO.getExtensions();
 
-    public static final String[] AUDIO_EXT = {
-        "mp3", "wav", "aiff", "au", "snd"
-    };
+    public static final String[] AUDIO_EXT = MediaType.AUDIO.getExtensions();
+
+    /**
+     * Class constructor. Not used.
+     */
+    private FileExtensions() {}
+
+    /**
+     * Determines the media type of a file from its extension.
+     * @param fileName the name of the file
+     * @return a MediaType, or null if the extension is not supported
+     */
+    public static MediaType typeOf(String fileName) {
+        return MediaType.forExtension(fileName);
+    }
 }
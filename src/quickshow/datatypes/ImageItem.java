@@ -7,32 +7,46 @@
 package quickshow.datatypes;
 
 import processing.core.PImage;
+import quickshow.ImageCache;
 
 public class ImageItem extends VisualItem {
-    private PImage image;
+    private ImageCache cache;
 
     /**
-     * Class constructor.
+     * Class constructor. The image itself is not decoded until it is first
+     *   requested.
      * @param parent the Quickshow object
      * @param fileName the file name of the image to load
-     * @param thumb the media item thumbnail
+     * @param thumb the media item thumbnail, or null to use the stored one
      */
     public ImageItem(quickshow.Quickshow parent, String fileName,
         PImage thumb)
     {
-        super(fileName, thumb);
+        super(fileName, MediaType.IMAGE, thumb, parent.getThumbnailStore());
 
         displayTime = 5;
 
-        image = parent.loadImage(fileName);
+        cache = parent.getImageCache();
     }
 
     /**
-     * Retrieves the image.
+     * Retrieves the image, decoding it if it is not currently cached.
      * @return a PImage object
      */
     public PImage getImage() {
-        return image;
+        return cache.get(getFileName());
+    }
+
+    /**
+     * Retrieves the image fitted to a display size, scaling it if it is not
+     *   currently cached at that size. The frame is shared and must not be
+     *   modified.
+     * @param width the maximum width of the frame
+     * @param height the maximum height of the frame
+     * @return a PImage object
+     */
+    public PImage getFrame(int width, int height) {
+        return cache.getScaled(getFileName(), width, height);
     }
 
     /**
@@ -6,15 +6,27 @@
 
 package quickshow.datatypes;
 
+import java.io.File;
+import java.io.IOException;
+
 public abstract class MediaItem {
     private String fileName;
+    private MediaType type;
+
+    //canonical path of the media file, resolved at most once
+    private volatile String canonicalPath = null;
+
+    //position in the order the MediaItem was requested, or 0 if unordered
+    private int sequence = 0;
 
     /**
      * Class constructor.
      * @param fileName the file name of the media file to load
+     * @param type the media type of the file
      */
-    public MediaItem(String fileName) {
+    public MediaItem(String fileName, MediaType type) {
         this.fileName = fileName;
+        this.type = type;
     }
 
     /**
@@ -26,40 +38,63 @@ public abstract class MediaItem {
     }
 
     /**
-     * Retrieves the media type of this VIsualItem.
-     * @return the item media type
+     * Retrieves the canonical path of the media file. The path is resolved
+     *   on the first call, which background loaders make before handing the
+     *   MediaItem to the animation thread.
+     * @return the canonical path, or the normalized absolute path if the
+     *   file cannot be resolved
      */
-    public String checkType() {
-        String result = null;
-
-        short i;
+    public String getCanonicalPath() {
+        String path = canonicalPath;
 
-        String[] fileNameParts = fileName.split("\\.");
+        if(path == null) {
+            File file = new File(fileName);
 
-        for(i = 0; i < FileExtensions.AUDIO_EXT.length; i++) {
-            if(fileNameParts[fileNameParts.length-1]
-                .equalsIgnoreCase(FileExtensions.AUDIO_EXT[i]))
-            {
-                result = "audio";
-                break;
+            try {
+                path = file.getCanonicalPath();
             }
-        }
 
-        if(i == FileExtensions.AUDIO_EXT.length) {
-            for(i = 0; i < FileExtensions.IMG_EXT.length; i++) {
-                if(fileNameParts[fileNameParts.length-1]
-                    .equalsIgnoreCase(FileExtensions.IMG_EXT[i]))
-                {
-                    result = "image";
-                    break;
-                }
+            catch(IOException e) {
+                path = file.getAbsoluteFile().toPath().normalize().toString();
             }
 
-            if(i == FileExtensions.IMG_EXT.length) {
-                result = "video";
-            }
+            canonicalPath = path;
         }
 
-        return result;
+        return path;
+    }
+
+    /**
+     * Sets the canonical path of the media file, when it is already known.
+     * @param canonicalPath the canonical path
+     */
+    public void setCanonicalPath(String canonicalPath) {
+        this.canonicalPath = canonicalPath;
+    }
+
+    /**
+     * Retrieves the media type of this MediaItem.
+     * @return the item media type
+     */
+    public MediaType getType() {
+        return type;
+    }
+
+    /**
+     * Retrieves the position of this MediaItem in the order MediaItems were
+     *   requested from a background loader.
+     * @return the sequence number, or 0 if the MediaItem has none
+     */
+    public int getSequence() {
+        return sequence;
+    }
+
+    /**
+     * Sets the position of this MediaItem in the order MediaItems were
+     *   requested from a background loader.
+     * @param sequence the sequence number, greater than 0
+     */
+    public void setSequence(int sequence) {
+        this.sequence = sequence;
     }
 }
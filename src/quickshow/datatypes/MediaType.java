@@ -0,0 +1,185 @@
+/**
+ * @file MediaType.java
+ * @description The media types supported by Quickshow, with their file
+ *   extensions and header signatures.
+ */
+
+package quickshow.datatypes;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.Locale;
+
+public enum MediaType {
+    AUDIO("audio", "mp3", "wav", "aiff", "au", "snd"),
+    IMAGE("image", "bmp", "jpg", "png", "gif"),
+    VIDEO("video", "mov", "avi", "mpg", "mp4");
+
+    private final String label;
+    private final String[] extensions;
+
+    //lower case extension -> media type
+    private static final HashMap<String, MediaType> registry;
+
+    static {
+        registry = new HashMap<String, MediaType>();
+
+        for(MediaType type : values()) {
+            for(String ext : type.extensions) {
+                registry.put(ext, type);
+            }
+        }
+    }
+
+    /**
+     * Enum constructor.
+     * @param label the name of the media type
+     * @param extensions the file extensions of the media type
+     */
+    private MediaType(String label, String... extensions) {
+        this.label = label;
+        this.extensions = extensions;
+    }
+
+    /**
+     * Retrieves the file extensions of the media type.
+     * @return a String array
+     */
+    public String[] getExtensions() {
+        return extensions.clone();
+    }
+
+    /**
+     * Retrieves the name of the media type.
+     * @return the name as a String
+     */
+    @Override
+    public String toString() {
+        return label;
+    }
+
+    /**
+     * Determines the media type of a file from its extension.
+     * @param fileName the name of the file
+     * @return a MediaType, or null if the extension is not registered
+     */
+    public static MediaType forExtension(String fileName) {
+        int dot = fileName.lastIndexOf('.');
+
+        if(dot < 0 || dot < fileName.lastIndexOf(java.io.File.separatorChar)) {
+            return null;
+        }
+
+        return registry.get(fileName.substring(dot + 1)
+            .toLowerCase(Locale.ENGLISH));
+    }
+
+    /**
+     * Determines the media type of a file. The extension is looked up first;
+     *   the header bytes are read only when the file has no extension or an
+     *   unregistered one.
+     * @param fileName the path of the file
+     * @return a MediaType, or null if the file is not supported
+     */
+    public static MediaType classify(String fileName) {
+        MediaType result = forExtension(fileName);
+
+        if(result == null) {
+            result = sniff(fileName);
+        }
+
+        return result;
+    }
+
+    /**
+     * Determines the media type of a file from its header bytes.
+     * @param fileName the path of the file
+     * @return a MediaType, or null if no known signature was found
+     */
+    public static MediaType sniff(String fileName) {
+        byte[] header = new byte[12];
+        InputStream in = null;
+
+        try {
+            in = new FileInputStream(fileName);
+
+            int length = 0, read;
+            while(length < header.length &&
+                (read = in.read(header, length, header.length - length)) > 0)
+            {
+                length += read;
+            }
+
+            if(length < header.length) {
+                return null;
+            }
+        }
+
+        catch(IOException e) {
+            return null;
+        }
+
+        finally {
+            if(in != null) {
+                try {
+                    in.close();
+                }
+
+                catch(IOException e) {}
+            }
+        }
+
+        int b0 = header[0] & 0xff, b1 = header[1] & 0xff;
+
+        //JPEG, PNG, GIF, BMP
+        if((b0 == 0xff && b1 == 0xd8) ||
+            (b0 == 0x89 && matches(header, 1, "PNG")) ||
+            matches(header, 0, "GIF8") ||
+            (matches(header, 0, "BM") && header[6] == 0 && header[7] == 0 &&
+            header[8] == 0 && header[9] == 0))
+        {
+            return IMAGE;
+        }
+
+        //AVI, ISO base media, MPEG program and elementary streams
+        if((matches(header, 0, "RIFF") && matches(header, 8, "AVI ")) ||
+            matches(header, 4, "ftyp") || matches(header, 4, "moov") ||
+            matches(header, 4, "mdat") || matches(header, 4, "wide") ||
+            (b0 == 0 && b1 == 0 && header[2] == 1 &&
+            ((header[3] & 0xff) == 0xba || (header[3] & 0xff) == 0xb3)))
+        {
+            return VIDEO;
+        }
+
+        //WAV, AIFF, AU, tagged MP3, MPEG audio frame
+        if((matches(header, 0, "RIFF") && matches(header, 8, "WAVE")) ||
+            (matches(header, 0, "FORM") && (matches(header, 8, "AIFF") ||
+            matches(header, 8, "AIFC"))) || matches(header, 0, ".snd") ||
+            matches(header, 0, "ID3") ||
+            (b0 == 0xff && (b1 & 0xe0) == 0xe0 && (b1 & 0x06) != 0))
+        {
+            return AUDIO;
+        }
+
+        return null;
+    }
+
+    /**
+     * Checks if data contains an ASCII signature.
+     * @param data the data to check
+     * @param i the index of the signature
+     * @param signature the signature
+     * @return true if the signature is present
+     */
+    private static boolean matches(byte[] data, int i, String signature) {
+        for(int j = 0; j < signature.length(); j++) {
+            if(data[i+j] != signature.charAt(j)) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+}
@@ -7,33 +7,127 @@
 package quickshow.datatypes;
 
 import processing.video.Movie;
+import quickshow.VideoHeaderReader;
 
 public class MovieItem extends VisualItem {
-    Movie movie;
+    private quickshow.Quickshow parent;
+
+    Movie movie = null;
+
+    private int width, height;
+
+    //set while the length is unknown until a pipeline is asked for it
+    private boolean probeLength = false;
 
     /**
      * Class constructor.
      * @param parent the Quickshow object
      * @param fileName the file name of the video file to load
-     * @param thumb the MediaItem thumbnail
+     * @param thumb the MediaItem thumbnail, or null to use the stored one
      */
     public MovieItem(quickshow.Quickshow parent, String fileName,
         processing.core.PImage thumb)
     {
-        super(fileName, thumb);
+        super(fileName, MediaType.VIDEO, thumb, parent.getThumbnailStore());
+
+        this.parent = parent;
+
+        VideoHeaderReader.Header header = VideoHeaderReader.read(fileName);
+
+        width = header.width;
+        height = header.height;
+
+        if(header.duration > 0f) {
+            displayTime = (int)Math.ceil(header.duration);
+        }
+
+        //this may run on a worker thread, so no pipeline is created here
+        else {
+            probeLength = true;
+        }
+    }
+
+    /**
+     * Class constructor for a video whose properties are already known. The
+     *   video file is not opened.
+     * @param parent the Quickshow object
+     * @param fileName the file name of the video file
+     * @param width the width of the video, or 0 if unknown
+     * @param height the height of the video, or 0 if unknown
+     * @param displayTime the duration of the video in seconds
+     */
+    public MovieItem(quickshow.Quickshow parent, String fileName, int width,
+        int height, int displayTime)
+    {
+        super(fileName, MediaType.VIDEO, null, parent.getThumbnailStore());
+
+        this.parent = parent;
+        this.width = width;
+        this.height = height;
+        this.displayTime = displayTime;
+    }
+
+    /**
+     * Retrieves the time that the video will be displayed. If the length
+     *   could not be read from the container, it is read from a short-lived
+     *   pipeline on the first call, which must be made from the animation
+     *   thread.
+     * @return the time in seconds
+     */
+    @Override
+    public int getDisplayTime() {
+        if(probeLength) {
+            probeLength = false;
+
+            Movie probe = new Movie(parent, getFileName());
 
-        movie = new Movie(parent, fileName);
+            probe.play();
+            displayTime = (int)Math.ceil(probe.duration());
+            probe.stop();
 
-        movie.play();
-        displayTime = (int)Math.ceil(movie.duration());
-        movie.stop();
+            probe.dispose();
+        }
+
+        return displayTime;
     }
 
     /**
-     * Retrieves the video.
+     * Retrieves the video, loading it if necessary.
      * @return a Movie object
      */
-    public Movie getMovie() {
+    public synchronized Movie getMovie() {
+        if(movie == null) {
+            movie = new Movie(parent, getFileName());
+        }
+
         return movie;
     }
+
+    /**
+     * Stops and disposes of the video. A new one is loaded by the next call
+     *   to getMovie().
+     */
+    public synchronized void releaseMovie() {
+        if(movie != null) {
+            movie.stop();
+            movie.dispose();
+            movie = null;
+        }
+    }
+
+    /**
+     * Retrieves the width of the video as stored in its header.
+     * @return the width, or 0 if unknown
+     */
+    public int getVideoWidth() {
+        return width;
+    }
+
+    /**
+     * Retrieves the height of the video as stored in its header.
+     * @return the height, or 0 if unknown
+     */
+    public int getVideoHeight() {
+        return height;
+    }
 }
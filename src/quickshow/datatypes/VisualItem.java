@@ -9,33 +9,66 @@ package quickshow.datatypes;
 import java.util.ArrayList;
 
 import processing.core.PImage;
+import quickshow.ThumbnailStore;
 
 public abstract class VisualItem extends MediaItem {
     private ArrayList<String> tagTexts;
     private ArrayList<int[]> tagTimes;
     private PImage thumb;
+
+    //source of a thumbnail not yet loaded, kept until a lookup finds it
+    private ThumbnailStore thumbStore;
+    private long nextLookup = 0;
     protected int displayTime = 0;
     private boolean atBottom = false;
 
+    //minimum time between lookups of a missing thumbnail in milliseconds
+    private static final long LOOKUP_INTERVAL = 2000;
+
     /**
      * Class constructor.
      * @param fileName the file name of the media file to load
-     * @param thumb the media item thumbnail
+     * @param type the media type of the file
+     * @param thumb the media item thumbnail, or null to load the stored one
+     *   when first requested
+     * @param thumbStore the store holding the thumbnail
      */
-    public VisualItem(String fileName, PImage thumb) {
-        super(fileName);
+    public VisualItem(String fileName, MediaType type, PImage thumb,
+        ThumbnailStore thumbStore)
+    {
+        super(fileName, type);
 
         this.thumb = thumb;
+        this.thumbStore = (thumb == null ? thumbStore : null);
 
         tagTexts = new ArrayList<String>();
         tagTimes = new ArrayList<int[]>();
     }
 
     /**
-     * Retrieves the thumbnail associated with this MediaItem.
-     * @return the thumbnail
+     * Retrieves the thumbnail associated with this MediaItem, loading the
+     *   stored one if necessary. A thumbnail missing from the store is looked
+     *   up again at most every LOOKUP_INTERVAL milliseconds, since it may
+     *   still be being generated.
+     * @return the thumbnail, or null if none is available
      */
     public PImage getThumbnail() {
+        if(thumbStore != null) {
+            long now = System.currentTimeMillis();
+
+            if(now >= nextLookup) {
+                thumb = thumbStore.get(getFileName());
+
+                if(thumb != null) {
+                    thumbStore = null;
+                }
+
+                else {
+                    nextLookup = now + LOOKUP_INTERVAL;
+                }
+            }
+        }
+
         return thumb;
     }
 
@@ -0,0 +1,155 @@
+/**
+ * @file WaveformSummary.java
+ * @description A compact waveform summary of an audio file, generated in a
+ *   single streaming decoding pass.
+ */
+
+package quickshow.datatypes;
+
+import java.util.Arrays;
+
+import ddf.minim.Minim;
+import ddf.minim.MultiChannelBuffer;
+import ddf.minim.analysis.FFT;
+import ddf.minim.spi.AudioRecordingStream;
+
+public class WaveformSummary {
+    private float[] levels;
+
+    public static final int FFT_SIZE = 1024;
+
+    //one level per audio timeline pixel column
+    public static final int MAX_LEVELS = 800;
+
+    //longest stream analyzed when its length is unknown, in seconds
+    private static final int MAX_UNKNOWN_LENGTH = 3600;
+
+    /**
+     * Class constructor.
+     * @param levels the waveform levels
+     */
+    public WaveformSummary(float[] levels) {
+        this.levels = levels;
+    }
+
+    /**
+     * Retrieves the waveform levels, each being half the height of the
+     *   waveform line drawn for that part of the audio file.
+     * @return a float array
+     */
+    public float[] getLevels() {
+        return levels;
+    }
+
+    /*
+     * Referenced from processing forums. Modified function to suit
+     * the needs of the application
+     */
+    /**
+     * Decodes an audio file one FFT window at a time, summing the left
+     *   channel spectrum of each window. Adjacent windows are then merged,
+     *   keeping the highest level, down to at most MAX_LEVELS values.
+     *   Safe to call from worker threads: only opening the stream touches
+     *   shared Minim state, and that is done holding the Minim object.
+     * @param minim the Minim object controlling the audio
+     * @param fileName the file name of the audio file
+     * @return a WaveformSummary object
+     */
+    public static WaveformSummary analyze(Minim minim, String fileName) {
+        AudioRecordingStream stream;
+
+        //Minim records each opened stream in an unsynchronized list
+        synchronized(minim) {
+            stream = minim.loadFileStream(fileName, FFT_SIZE, false);
+        }
+
+        if(stream == null) {
+            return new WaveformSummary(new float[0]);
+        }
+
+        float[] chunkLevels = new float[256];
+        int numChunks = 0;
+
+        try {
+            stream.play();
+
+            float sampleRate = stream.getFormat().getSampleRate();
+            long frames = stream.getSampleFrameLength();
+
+            if(frames <= 0) {
+                frames = (stream.getMillisecondLength() > 0 ?
+                    (long)(stream.getMillisecondLength() / 1000.0 * sampleRate) :
+                    (long)(MAX_UNKNOWN_LENGTH * sampleRate));
+            }
+
+            FFT fft = new FFT(FFT_SIZE, sampleRate);
+            MultiChannelBuffer buffer = new MultiChannelBuffer(FFT_SIZE,
+                stream.getFormat().getChannels());
+            float[] leftSample = new float[FFT_SIZE];
+            float[] leftChannel;
+            int chunkSize, i;
+            float total;
+
+            for(long read = 0; read < frames && stream.isPlaying();
+                read += chunkSize)
+            {
+                chunkSize = (int)Math.min(frames - read, FFT_SIZE);
+
+                buffer.setBufferSize(chunkSize);
+                stream.read(buffer);
+                leftChannel = buffer.getChannel(0);
+
+                System.arraycopy(leftChannel, 0, leftSample, 0, chunkSize);
+
+                // if the chunk was smaller than the fftSize, pad with zeroes
+                if(chunkSize < FFT_SIZE) {
+                    Arrays.fill(leftSample, chunkSize, FFT_SIZE, 0f);
+                }
+
+                fft.forward(leftSample);
+
+                for(total = 0f, i = 0; i < FFT_SIZE/2 - 1; i++) {
+                    total += fft.getBand(i);
+                }
+
+                if(numChunks == chunkLevels.length) {
+                    chunkLevels = Arrays.copyOf(chunkLevels, numChunks * 2);
+                }
+
+                chunkLevels[numChunks++] = total / 120f;
+            }
+        }
+
+        finally {
+            stream.close();
+        }
+
+        return new WaveformSummary(merge(chunkLevels, numChunks));
+    }
+
+    /**
+     * Reduces a list of levels by keeping the highest level of each group of
+     *   adjacent values.
+     * @param chunkLevels the levels to reduce
+     * @param numChunks the number of valid levels
+     * @return a float array of at most MAX_LEVELS values
+     */
+    private static float[] merge(float[] chunkLevels, int numChunks) {
+        if(numChunks <= MAX_LEVELS) {
+            return Arrays.copyOf(chunkLevels, numChunks);
+        }
+
+        float[] result = new float[MAX_LEVELS];
+        int bin;
+
+        for(int i = 0; i < numChunks; i++) {
+            bin = (int)((long)i * MAX_LEVELS / numChunks);
+
+            if(chunkLevels[i] > result[bin]) {
+                result[bin] = chunkLevels[i];
+            }
+        }
+
+        return result;
+    }
+}
@@ -6,9 +6,13 @@
 
 package quickshow;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.PriorityQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 
 import processing.core.PConstants;
 import processing.core.PFont;
@@ -16,6 +20,7 @@ import processing.core.PImage;
 import processing.video.Movie;
 import quickshow.datatypes.AudioItem;
 import quickshow.datatypes.ImageItem;
+import quickshow.datatypes.MediaType;
 import quickshow.datatypes.MovieItem;
 import quickshow.datatypes.VisualItem;
 import controlP5.Button;
@@ -33,10 +38,21 @@ public class slideShow {
     private Button stopButton;
     private Toggle playPause;
 
-    private PImage curFrame, transitFrame;
-    private int[] transitDelta = {0, 0}, transitDirection = {1, 1};
-    private int fadeAlpha = 255;
-    private boolean transit = false, fade = false;
+    private PImage curFrame;
+
+    //false while curFrame is an image shared with the ImageCache
+    private boolean ownsFrame = true;
+    private boolean transit = false, fade = false, mixed = false;
+
+    //blends the outgoing and incoming slides while in transit
+    private TransitionCompositor compositor;
+    private TransitionCompositor.Transition transition = null;
+    private TransitionCompositor.Transition fadeTransition;
+
+    //transitions picked from at random when mixed transitions are enabled
+    private TransitionCompositor.Transition[] transitions;
+    private Transitions.Slide slideTransition;
+
     private Movie movie;
 
     private int frameWidth, frameHeight;
@@ -48,6 +64,10 @@ public class slideShow {
     private AudioItem curAudioItem = null;
     private VisualItem curVisualItem = null;
 
+    //VisualItems to be displayed next, prepared in the background
+    private ArrayDeque<VisualItem> upcoming;
+    private SlidePreloader preloader;
+
     private ArrayList<String> curTagTexts;
     private ArrayList<int[]> curTagTimes;
     private String tagText = "";
@@ -56,25 +76,57 @@ public class slideShow {
 
     private float curImgTime;
 
+    //times the current slide, or the current transition while in transit
+    private PlaybackClock clock;
+
     private boolean isPlaying = false, isEnabled = false, shuffle = false;
 
-	private PFont font;
+	private PFont font = null;
+
+    //the caption font is not needed until the first slide show
+    private Future<PFont> fontLoader;
+
+    private static final String CAPTION_FONT = "SansSerif.bold-32.vlw";
+
+    //number of VisualItems prepared ahead of the current one
+    private static final int LOOKAHEAD = 2;
 
     /**
      * Class constructor.
      * @param parent the instantiating Quickshow object
      * @param control the ControlP5 object handling UI elements
      */
-    public slideShow(Quickshow parent, ControlP5 control) {
+    public slideShow(final Quickshow parent, ControlP5 control) {
         this.parent = parent;
 
-        font = parent.loadFont("data/SansSerif.bold-32.vlw");
+        fontLoader = parent.getStartupProfiler().defer("slide show font",
+            new Callable<PFont>() {
+                public PFont call() {
+                    return parent.getAssets().getFont(CAPTION_FONT);
+                }
+            });
 
         debug = parent.getDebugFlag();
 
         audios = new ArrayList<AudioItem>();
         visuals = new ArrayList<VisualItem>();
 
+        upcoming = new ArrayDeque<VisualItem>(LOOKAHEAD);
+
+        clock = new PlaybackClock(24f);
+        preloader = new SlidePreloader(parent.width, parent.height, debug);
+        compositor = new TransitionCompositor(parent, parent.width,
+            parent.height, 0xff555555);
+
+        fadeTransition = new Transitions.Fade();
+        slideTransition = new Transitions.Slide();
+        transitions = new TransitionCompositor.Transition[] {
+            slideTransition,
+            new Transitions.Wipe(),
+            new Transitions.Zoom(),
+            new Transitions.Dissolve()
+        };
+
         curTagTexts = new ArrayList<String>();
         curTagTimes = new ArrayList<int[]>();
         tagStartTimes = new PriorityQueue<Integer>();
@@ -90,9 +142,9 @@ public class slideShow {
             .setSize(30, 30)
             .setGroup(group)
             .setImages(
-                parent.loadImage("data/img/playbutton.png"),
+                parent.getAssets().getImage("img/playbutton.png"),
                 null,
-                parent.loadImage("data/img/pausebutton.png")
+                parent.getAssets().getImage("img/pausebutton.png")
             ).setLock(true);
 
         stopButton = control.addButton("stopButton")
@@ -100,7 +152,7 @@ public class slideShow {
             .setLock(true)
             .setPosition(50, 10)
             .setSize(30, 30)
-            .setImage(parent.loadImage("data/img/stopbutton.png"))
+            .setImage(parent.getAssets().getImage("img/stopbutton.png"))
             .setGroup(group);
 
         curFrame = parent.createImage(0, 0, PConstants.RGB);
@@ -175,6 +227,16 @@ public class slideShow {
             }
 
             toggleFade(((Toggle)e.getController()).getState());
+
+            break;
+
+        case "mixToggle":
+            if(debug) {
+                Quickshow.println("mixed transitions: " +
+                    ((Toggle)e.getController()).getState());
+            }
+
+            toggleMixed(((Toggle)e.getController()).getState());
         }
     }
 
@@ -185,6 +247,8 @@ public class slideShow {
         parent.background(0xff555555);
 
         if(isPlaying) {
+            clock.tick(parent.frameRate);
+
             if(!transit) {
                 if(curAudioItem != null) {
                     if(!curAudioItem.getAudio().isPlaying()) {
@@ -193,7 +257,8 @@ public class slideShow {
                 }
 
                 if(curVisualItem != null) {
-                    curImgTime += 1f/parent.frameRate;
+                    //late frames skip ahead rather than slowing the show
+                    curImgTime = clock.elapsed();
 
                     if(movie != null) {
                         if(movie.available()) {
@@ -201,6 +266,7 @@ public class slideShow {
                         }
 
                         curFrame = movie.get();
+                        ownsFrame = true;
                     }
 
                     if(curImgTime >= (float)curVisualItem.getDisplayTime()) {
@@ -208,57 +274,15 @@ public class slideShow {
                             Quickshow.println("slide show transition begin");
                         }
 
+                        //the transition starts when the slide was due to end
+                        clock.advance(curVisualItem.getDisplayTime());
                         curImgTime = 0f;
 
                         transit = true;
 
-                        //create transition frame
-                        transitFrame = parent.createImage(
-                            parent.width,
-                            parent.height,
-                            PConstants.RGB
-                        );
-                        transitFrame.set(
-                            (parent.width - curFrame.width)/2,
-                            (parent.height - curFrame.height)/2,
-                            curFrame
-                        );
-
-                        //Compensate for transparency
-                        transitFrame.loadPixels();
-                        float a, r, g, b;
-                        for(int i = 0; i < transitFrame.pixels.length; i++) {
-                            a = parent.alpha(transitFrame.pixels[i]) / 255f;
-                            if(a < 1f) {
-                                r = a*parent.red(transitFrame.pixels[i]) +
-                            		0x55*(1f-a);
-                                g = a*parent.green(transitFrame.pixels[i]) +
-                            		0x55*(1f-a);
-                                b = a*parent.blue(transitFrame.pixels[i]) +
-                            		0x55*(1f-a);
-
-                                transitFrame.pixels[i] = parent.color(r, g, b);
-                            }
-                        }
-                        transitFrame.updatePixels();
-
-                        if(!fade) {
-                            //set horizontal transition direction
-                            double rand = Math.random();
-                            transitDirection[0] = (rand < 0.33 ? 1 :
-                                (rand < 0.66 ? 0 : -1));
-
-                            //set vertical transition direction
-                            rand = Math.random();
-                            if(transitDirection[0] != 0) {
-                                transitDirection[1] = (rand < 0.33 ? 1 :
-                                    (rand < 0.66 ? 0 : -1));
-                            }
-
-                            else {
-                                transitDirection[1] = (rand < 0.5 ? 1 : -1);
-                            }
-                        }
+                        //keep the outgoing slide for the transition
+                        transition = nextTransition();
+                        compositor.begin(curFrame, transition);
 
                         nextVisualItem();
 
@@ -266,6 +290,7 @@ public class slideShow {
                             movie.read();
 
                             curFrame = movie.get();
+                            ownsFrame = true;
                         }
                     }
 
@@ -274,7 +299,10 @@ public class slideShow {
                     {
                         calcFrameDims();
 
-                        curFrame.resize(frameWidth, frameHeight);
+                        //images are already fitted and must stay untouched
+                        if(ownsFrame) {
+                            curFrame.resize(frameWidth, frameHeight);
+                        }
                     }
                 }
 
@@ -286,9 +314,10 @@ public class slideShow {
 
         parent.tint(255, 255);
         parent.imageMode(PConstants.CENTER);
-        parent.image(curFrame, parent.width/2, parent.height/2);
 
         if(!transit) {
+            parent.image(curFrame, parent.width/2, parent.height/2);
+
             if(!tagStartTimes.isEmpty() && tagStartTimes.peek() <= curImgTime) {
                 tagStartTimes.poll();
                 tagText = genTagString();
@@ -301,7 +330,7 @@ public class slideShow {
 
             if(!tagText.equals("")) {
                 parent.fill(0);
-                parent.textFont(font);
+                parent.textFont(getFont());
                 parent.textAlign(PConstants.CENTER, PConstants.CENTER);
 
                 if(curVisualItem != null) {
@@ -343,50 +372,21 @@ public class slideShow {
         }
 
         else {
-            if(fade) {
-                parent.tint(255, fadeAlpha);
-            }
-            parent.image(
-                transitFrame,
-                parent.width/2 + transitDelta[0],
-                parent.height/2 + transitDelta[1]
-            );
+            //transition state follows the clock, not the frame count
+            float length = transition.getDuration();
+            float progress = Math.min(clock.elapsed() / length, 1f);
 
-            if(isPlaying) {
-                if(fade) {
-                    fadeAlpha -= 255/25;
+            parent.image(compositor.render(curFrame, progress),
+                parent.width/2, parent.height/2);
 
-                    if(fadeAlpha <= 0) {
-                        fadeAlpha = 255;
+            if(isPlaying && progress >= 1f) {
+                transit = false;
 
-                        transit = false;
+                //the next slide starts when the transition was due to end
+                clock.advance(length);
 
-                        if(debug) {
-                            Quickshow.println("slide show transition end");
-                        }
-                    }
-                }
-
-                else {
-                    transitDelta[0] += (int)(1f / 25f * parent.width) *
-                        transitDirection[0];
-                    transitDelta[1] += (int)(1f / 25f * parent.height) *
-                        transitDirection[1];
-
-                    if(
-                        (int)(1.5f*parent.width) <= transitDelta[0] ||
-                        (int)(-1.5f*parent.width) >= transitDelta[0] ||
-                        (int)(1.5f*parent.height) <= transitDelta[1] ||
-                        (int)(-1.5f*parent.height) >= transitDelta[1]
-                    ) {
-                        transitDelta[0] = transitDelta[1] = 0;
-
-                        transit = false;
-
-                        if(debug) {
-                            Quickshow.println("slide show transition end");
-                        }
-                    }
+                if(debug) {
+                    Quickshow.println("slide show transition end");
                 }
             }
         }
@@ -404,6 +404,8 @@ public class slideShow {
         }
 
         if(!isPlaying) {
+            clock.pause();
+
             if(curAudioItem != null) {
                 curAudioItem.getAudio().pause();
             }
@@ -414,6 +416,8 @@ public class slideShow {
         }
 
         else {
+            clock.resume();
+
             if(curAudioItem != null) {
                 curAudioItem.getAudio().play();
             }
@@ -428,22 +432,22 @@ public class slideShow {
      * Calculates the dimensions of the VisualItem frame.
      */
     private void calcFrameDims() {
-        float aspect = 1f * curFrame.width / curFrame.height;
+        int[] dims = ImageDecoder.fitDims(curFrame.width, curFrame.height,
+            parent.width, parent.height);
 
-        frameWidth = (curFrame.width > parent.width ?
-            parent.width : curFrame.width);
-        frameHeight = (int)(frameWidth / aspect);
-
-        if(frameHeight > parent.height) {
-            frameHeight = parent.height;
-            frameWidth = (int)(frameHeight * aspect);
-        }
+        frameWidth = dims[0];
+        frameHeight = dims[1];
     }
 
     /**
      * Prepares the next AudioItem in the playlist.
      */
     private void nextAudioItem() {
+        //finished players are reloaded if the song is played again
+        if(curAudioItem != null) {
+            curAudioItem.releaseAudio();
+        }
+
         if(shuffle && !audios.isEmpty()) {
             int shuffleIndex = (int)(Math.random()*audios.size());
 
@@ -454,30 +458,39 @@ public class slideShow {
 
         else if(audioIter != null && audioIter.hasNext()) {
             curAudioItem = audioIter.next();
-            curAudioItem.getAudio().play();
+
+            if(curAudioItem.getAudio() != null) {
+                curAudioItem.getAudio().play();
+            }
         }
 
         else {
             curAudioItem = null;
         }
+
+        //skip files that could not be loaded
+        if(curAudioItem != null && curAudioItem.getAudio() == null) {
+            nextAudioItem();
+        }
     }
 
     /**
      * Prepares the next VisualItem in the playlist.
      */
     private void nextVisualItem() {
-        movie = null;
+        if(movie != null) {
+            ((MovieItem)curVisualItem).releaseMovie();
+            movie = null;
+        }
 
-        if(shuffle && !visuals.isEmpty()) {
-            int shuffleIndex = (int)(Math.random()*visuals.size());
+        fillUpcoming();
 
-            curVisualItem = visuals.get(shuffleIndex);
+        if(!upcoming.isEmpty()) {
+            curVisualItem = upcoming.poll();
 
-            visuals.remove(shuffleIndex);
-        }
+            preloader.claim(curVisualItem);
 
-        else if(visualIter != null && visualIter.hasNext()) {
-            curVisualItem = visualIter.next();
+            fillUpcoming();
         }
 
         else {
@@ -505,45 +518,98 @@ public class slideShow {
                 tagEndTimes.add(time[1]);
             }
 
-            if(curVisualItem.checkType().equals("video")) {
+            if(curVisualItem.getType() == MediaType.VIDEO) {
                 movie = ((MovieItem)curVisualItem).getMovie();
                 movie.play();
                 movie.volume(0.0f);
+
+                //prerolled videos already hold their first frame
+                if(movie.width > 0) {
+                    curFrame = movie.get();
+                    ownsFrame = true;
+                }
             }
 
             else {
-                curFrame = ((ImageItem)curVisualItem).getImage();
+                curFrame = ((ImageItem)curVisualItem).getFrame(parent.width,
+                    parent.height);
+                ownsFrame = false;
             }
 
             if(debug) {
                 Quickshow.println(
-                    "visual item type: " + curVisualItem.checkType() +
+                    "visual item type: " + curVisualItem.getType() +
                     "\nduration: " + curVisualItem.getDisplayTime()
                 );
             }
         }
     }
 
+    /**
+     * Chooses the VisualItems following the current one, and queues them to
+     *   be prepared while the current one is displayed.
+     */
+    private void fillUpcoming() {
+        VisualItem item;
+
+        while(upcoming.size() < LOOKAHEAD) {
+            if(shuffle && !visuals.isEmpty()) {
+                int shuffleIndex = (int)(Math.random()*visuals.size());
+
+                item = visuals.get(shuffleIndex);
+
+                visuals.remove(shuffleIndex);
+            }
+
+            else if(visualIter != null && visualIter.hasNext()) {
+                item = visualIter.next();
+            }
+
+            else {
+                return;
+            }
+
+            //a video can only be prepared once it is no longer displayed
+            if(item != curVisualItem && !upcoming.contains(item)) {
+                preloader.preload(item);
+            }
+
+            upcoming.add(item);
+        }
+    }
+
     /**
      * ControlP5 UI handler. Stops slide show playback.
      */
     public void stopButton() {
         transit = isEnabled = false;
 
+        preloader.cancelAll();
+        upcoming.clear();
+
+        if(debug) {
+            Quickshow.println("slides preloaded: " + preloader.getReady() +
+                ", late: " + preloader.getLate() + "\nframes drawn: " +
+                clock.getFrames() + ", dropped: " + clock.getDroppedFrames() +
+                String.format(", frame count drift: %.3f s",
+                clock.getDrift()));
+        }
+
         audioIter = null;
         if(curAudioItem != null) {
-            curAudioItem.getAudio().pause();
+            curAudioItem.releaseAudio();
         }
         curAudioItem = null;
 
         visualIter = null;
-        curVisualItem = null;
 
         if(movie != null) {
-            movie.stop();
+            ((MovieItem)curVisualItem).releaseMovie();
             movie = null;
         }
 
+        curVisualItem = null;
+
         toggleUI(false);
 
         visuals.clear();
@@ -580,6 +646,14 @@ public class slideShow {
         return isEnabled;
     }
 
+    /**
+     * Stops the background threads of the slide show.
+     */
+    public void shutdown() {
+        preloader.shutdown();
+        compositor.shutdown();
+    }
+
     /**
      * Enables the slide show and begins playback.
      */
@@ -602,6 +676,8 @@ public class slideShow {
         toggleUI(true);
 
         curImgTime = 0;
+
+        clock.start();
     }
 
     /**
@@ -634,6 +710,39 @@ public class slideShow {
         }
     }
 
+    /**
+     * Picks the transition to the next VisualItem.
+     * @return the fade Transition if fading is enabled, a random Transition
+     *   if mixed transitions are enabled, or else the slide Transition
+     */
+    private TransitionCompositor.Transition nextTransition() {
+        if(fade) {
+            return fadeTransition;
+        }
+
+        //set horizontal transition direction
+        double rand = Math.random();
+        int dirX = (rand < 0.33 ? 1 : (rand < 0.66 ? 0 : -1)), dirY;
+
+        //set vertical transition direction
+        rand = Math.random();
+        if(dirX != 0) {
+            dirY = (rand < 0.33 ? 1 : (rand < 0.66 ? 0 : -1));
+        }
+
+        else {
+            dirY = (rand < 0.5 ? 1 : -1);
+        }
+
+        slideTransition.setDirection(dirX, dirY);
+
+        if(!mixed) {
+            return slideTransition;
+        }
+
+        return transitions[(int)(Math.random() * transitions.length)];
+    }
+
     /**
      * Toggles the slide show fade transition.
      * @param fade whether or not to fade transition between VisualItems
@@ -642,6 +751,41 @@ public class slideShow {
         this.fade = fade;
     }
 
+    /**
+     * Toggles random transitions between VisualItems.
+     * @param mixed whether or not to pick transitions at random when not
+     *   fading
+     */
+    private void toggleMixed(boolean mixed) {
+        this.mixed = mixed;
+    }
+
+    /**
+     * Retrieves the caption font, waiting for it to finish loading if
+     *   necessary.
+     * @return a PFont object
+     */
+    private PFont getFont() {
+        if(font == null) {
+            try {
+                font = fontLoader.get();
+            }
+
+            catch(InterruptedException | ExecutionException e) {
+                if(debug) {
+                    e.printStackTrace();
+                }
+            }
+
+            //load it here instead if the background load failed
+            if(font == null) {
+                font = parent.getAssets().getFont(CAPTION_FONT);
+            }
+        }
+
+        return font;
+    }
+
     /**
      * Generates the new caption string, comprised of all captions starting
      *   before and ends after the current image timestamp.
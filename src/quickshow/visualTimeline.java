@@ -12,6 +12,7 @@ import java.util.ListIterator;
 import processing.core.PConstants;
 import processing.core.PFont;
 import processing.core.PImage;
+import quickshow.datatypes.MediaType;
 import quickshow.datatypes.VisualItem;
 
 public class visualTimeline {
@@ -175,7 +176,7 @@ public class visualTimeline {
             item = iter.next();
             item.clearTags();
 
-            if(item.checkType().equalsIgnoreCase("image")) {
+            if(item.getType() == MediaType.IMAGE) {
                 ((quickshow.datatypes.ImageItem)item).setDisplayTime(5);
             }
 
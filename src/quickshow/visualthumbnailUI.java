@@ -13,6 +13,7 @@ import processing.core.PConstants;
 import processing.core.PFont;
 import processing.core.PImage;
 import processing.data.IntList;
+import quickshow.datatypes.MediaType;
 import quickshow.datatypes.VisualItem;
 
 public class visualthumbnailUI {
@@ -21,6 +22,7 @@ public class visualthumbnailUI {
     private boolean debug = true;
 
     private ArrayList <VisualItem> items;
+    private MediaLibrary library;
     private IntList selectedIndex;
 
     static final private int MAX_THUMBNAIL_HEIGHT = 124;
@@ -47,6 +49,7 @@ public class visualthumbnailUI {
         this.font = font;
 
         debug = parent.getDebugFlag();
+        library = parent.getLibrary();
         items = new ArrayList<VisualItem>();
 
         selectedIndex = new IntList();
@@ -165,26 +168,21 @@ public class visualthumbnailUI {
             Quickshow.println("Receiving items size: " + vItems.size());
         }
 
-        //only add if items are not already in list
-        VisualItem item;
-        int i;
-        ListIterator<VisualItem> itemIter;
-        for(VisualItem vItem : vItems) {
-            itemIter = items.listIterator();
-            i = 0;
-
-            while(itemIter.hasNext()) {
-                item = itemIter.next();
+        int index;
 
-                if(vItem.getFileName().equalsIgnoreCase(item.getFileName())) {
-                    break;
+        //only add if items are not already loaded
+        for(VisualItem vItem : vItems) {
+            if(library.add(vItem)) {
+                //items loaded in parallel are put back into load order
+                index = MediaLibrary.orderedIndex(items, vItem);
+                items.add(index, vItem);
+
+                //selections follow the items moved down
+                for(int i = 0; i < selectedIndex.size(); i++) {
+                    if(selectedIndex.get(i) >= index) {
+                        selectedIndex.add(i, 1);
+                    }
                 }
-
-                i++;
-            }
-
-            if(i == items.size()) {
-                items.add(vItem);
             }
         }
 
@@ -219,7 +217,7 @@ public class visualthumbnailUI {
                 selectedIndex.append(mainIndex);
 
                 if(debug) {
-                    Quickshow.println(items.get(mainIndex).checkType() +
+                    Quickshow.println(items.get(mainIndex).getType() +
                         " added to timeline");
                 }
             }
@@ -227,13 +225,13 @@ public class visualthumbnailUI {
             else {
                 selectedIndex.remove(selectedIndex.index(mainIndex));
 
-                if(items.get(mainIndex).checkType().equalsIgnoreCase("image")) {
+                if(items.get(mainIndex).getType() == MediaType.IMAGE) {
                     ((quickshow.datatypes.ImageItem)items.get(mainIndex))
                         .setDisplayTime(5);
                 }
 
                 if(debug) {
-                    Quickshow.println(items.get(mainIndex).checkType() +
+                    Quickshow.println(items.get(mainIndex).getType() +
                         " removed from timeline");
                 }
             }
@@ -266,7 +264,7 @@ public class visualthumbnailUI {
             do {
                 v = itemIter.next();
 
-                if(v.checkType().equals("image") &&
+                if(v.getType() == MediaType.IMAGE &&
                     !selectedIndex.hasValue(i))
                 {
                     selectedIndex.append(i);
@@ -290,7 +288,7 @@ public class visualthumbnailUI {
             do {
                 v = itemIter.next();
 
-                if(v.checkType().equals("video") &&
+                if(v.getType() == MediaType.VIDEO &&
                     !selectedIndex.hasValue(i))
                 {
                     selectedIndex.append(i);
@@ -0,0 +1,204 @@
+/**
+ * @file AudioHeaderReaderTest.java
+ * @description Tests the metadata read from generated audio file headers.
+ */
+
+package quickshow;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+import javax.sound.sampled.AudioFileFormat;
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.AudioSystem;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class AudioHeaderReaderTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static final Charset LATIN_1 = Charset.forName("ISO-8859-1");
+
+    //MPEG 1 layer III, 128 kbit/s, 44100 Hz, stereo
+    private static final int MP3_FRAME = 0xfffb9000;
+
+    /**
+     * Writes a file into the temporary folder.
+     * @param data the contents of the file
+     * @return the path of the file
+     */
+    private String write(byte[] data) throws IOException {
+        File file = folder.newFile();
+        FileOutputStream out = new FileOutputStream(file);
+
+        try {
+            out.write(data);
+        }
+
+        finally {
+            out.close();
+        }
+
+        return file.getPath();
+    }
+
+    /**
+     * Writes silent 16-bit mono audio with the Java sound API.
+     * @param type the audio file type
+     * @param millis the length of the audio in milliseconds
+     * @return the path of the file
+     */
+    private String sound(AudioFileFormat.Type type, int millis)
+        throws IOException
+    {
+        AudioFormat format = new AudioFormat(8000f, 16, 1, true, true);
+        int frames = 8 * millis;
+
+        AudioInputStream in = new AudioInputStream(new ByteArrayInputStream(
+            new byte[2 * frames]), format, frames);
+        File file = folder.newFile();
+
+        AudioSystem.write(in, type, file);
+
+        return file.getPath();
+    }
+
+    /**
+     * Puts an ASCII string into a buffer.
+     * @param buf the buffer
+     * @param text the string
+     * @return the buffer
+     */
+    private static ByteBuffer put(ByteBuffer buf, String text) {
+        return buf.put(text.getBytes(LATIN_1));
+    }
+
+    @Test
+    public void readsWaveLengthAndInfoTags() throws IOException {
+        ByteBuffer wav = ByteBuffer.allocate(24100)
+            .order(ByteOrder.LITTLE_ENDIAN);
+
+        put(wav, "RIFF").putInt(0);
+        put(wav, "WAVE");
+
+        //PCM, mono, 8000 Hz, 16000 bytes per second
+        put(wav, "fmt ").putInt(16).putShort((short)1).putShort((short)1);
+        wav.putInt(8000).putInt(16000).putShort((short)2).putShort((short)16);
+
+        //odd sized tags are padded
+        put(wav, "LIST").putInt(4 + 14 + 16);
+        put(wav, "INFO");
+        put(put(wav, "INAM").putInt(5), "Song\0").put((byte)0);
+        put(put(wav, "IART").putInt(8), "Artist\0\0");
+
+        put(wav, "data").putInt(24000);
+        wav.position(wav.position() + 24000);
+
+        AudioHeaderReader.Header header = AudioHeaderReader.read(write(
+            Arrays.copyOf(wav.array(), wav.position())));
+
+        assertEquals("Song", header.title);
+        assertEquals("Artist", header.author);
+        assertEquals(1500, header.length);
+    }
+
+    @Test
+    public void readsLengthOfGeneratedFiles() throws IOException {
+        assertEquals(1250, AudioHeaderReader.read(sound(
+            AudioFileFormat.Type.WAVE, 1250)).length);
+        assertEquals(2000, AudioHeaderReader.read(sound(
+            AudioFileFormat.Type.AIFF, 2000)).length);
+        assertEquals(750, AudioHeaderReader.read(sound(
+            AudioFileFormat.Type.AU, 750)).length);
+    }
+
+    @Test
+    public void readsId3v2Frames() throws IOException {
+        ByteBuffer mp3 = ByteBuffer.allocate(1024);
+        String[][] frames = {
+            {"TIT2", "Title"}, {"TPE1", "Author"}, {"TLEN", "123456"}
+        };
+
+        put(mp3, "ID3").put((byte)3).put((byte)0).put((byte)0);
+
+        //sync-safe tag size of 200 bytes
+        mp3.putInt((1 << 8) | (200 - 128));
+
+        for(String[] frame : frames) {
+            put(mp3, frame[0]).putInt(1 + frame[1].length());
+            mp3.putShort((short)0).put((byte)0);
+            put(mp3, frame[1]);
+        }
+
+        mp3.position(210);
+        mp3.putInt(MP3_FRAME);
+
+        AudioHeaderReader.Header header = AudioHeaderReader.read(write(
+            mp3.array()));
+
+        assertEquals("Title", header.title);
+        assertEquals("Author", header.author);
+        assertEquals(123456, header.length);
+    }
+
+    @Test
+    public void estimatesConstantBitRateLength() throws IOException {
+        byte[] data = new byte[160000 + 128];
+        ByteBuffer mp3 = ByteBuffer.wrap(data);
+
+        mp3.putInt(MP3_FRAME);
+
+        //ID3v1 tag, excluded from the audio data
+        mp3.position(160000);
+        put(mp3, "TAG");
+        put(mp3, "Old Title");
+        mp3.position(160000 + 33);
+        put(mp3, "Old Author");
+
+        AudioHeaderReader.Header header = AudioHeaderReader.read(write(data));
+
+        assertEquals("Old Title", header.title);
+        assertEquals("Old Author", header.author);
+        assertEquals(10000, header.length);
+    }
+
+    @Test
+    public void countsVariableBitRateFrames() throws IOException {
+        ByteBuffer mp3 = ByteBuffer.allocate(4096);
+
+        //the Xing header follows 32 bytes of stereo side information
+        mp3.putInt(MP3_FRAME);
+        mp3.position(4 + 32);
+        put(mp3, "Xing").putInt(1).putInt(441);
+
+        assertEquals(441 * 1152 * 1000 / 44100, AudioHeaderReader.read(
+            write(mp3.array())).length);
+    }
+
+    @Test
+    public void leavesUnknownFilesEmpty() throws IOException {
+        byte[] text = "not an audio file, only some text".getBytes(LATIN_1);
+
+        for(String path : new String[] {write(text), write(new byte[4]),
+            new File(folder.getRoot(), "missing.mp3").getPath()})
+        {
+            AudioHeaderReader.Header header = AudioHeaderReader.read(path);
+
+            assertEquals("", header.title);
+            assertEquals("", header.author);
+            assertEquals(0, header.length);
+        }
+    }
+}
@@ -0,0 +1,193 @@
+/**
+ * @file ExifThumbnailReaderTest.java
+ * @description Tests the extraction of EXIF previews from generated JPEG
+ *   files.
+ */
+
+package quickshow;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import javax.imageio.ImageIO;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import processing.core.PImage;
+
+public class ExifThumbnailReaderTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * Encodes a blank JPEG image.
+     * @param width the width of the image
+     * @param height the height of the image
+     * @return the JPEG data
+     */
+    private static byte[] jpeg(int width, int height) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+        ImageIO.write(new BufferedImage(width, height,
+            BufferedImage.TYPE_INT_RGB), "jpg", bytes);
+
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Builds an EXIF APP1 segment whose second image file directory points
+     *   to a preview.
+     * @param preview the preview JPEG data, or null for no second directory
+     * @param order the byte order of the TIFF structure
+     * @return the segment contents, without marker and length
+     */
+    private static byte[] exif(byte[] preview, ByteOrder order) {
+        int length = (preview != null ? preview.length : 0);
+        ByteBuffer tiff = ByteBuffer.allocate(44 + length).order(order);
+
+        tiff.put((byte)(order == ByteOrder.LITTLE_ENDIAN ? 'I' : 'M'));
+        tiff.put(tiff.get(0));
+        tiff.putShort((short)42);
+        tiff.putInt(8);
+
+        //empty first directory, then the offset of the second
+        tiff.putShort((short)0);
+        tiff.putInt(preview != null ? 14 : 0);
+
+        if(preview != null) {
+            tiff.putShort((short)2);
+
+            tiff.putShort((short)0x0201).putShort((short)4).putInt(1);
+            tiff.putInt(44);
+
+            tiff.putShort((short)0x0202).putShort((short)4).putInt(1);
+            tiff.putInt(length);
+
+            tiff.putInt(0);
+            tiff.put(preview);
+        }
+
+        byte[] segment = new byte[6 + tiff.position()];
+        segment[0] = 'E';
+        segment[1] = 'x';
+        segment[2] = 'i';
+        segment[3] = 'f';
+        System.arraycopy(tiff.array(), 0, segment, 6, tiff.position());
+
+        return segment;
+    }
+
+    /**
+     * Writes a JPEG file made of an optional APP1 segment and a frame
+     *   header. The image data is never read, so none is written.
+     * @param exif the APP1 segment contents, or null for none
+     * @param width the width of the main image
+     * @param height the height of the main image
+     * @return the path of the file
+     */
+    private String write(byte[] exif, int width, int height)
+        throws IOException
+    {
+        ByteBuffer data = ByteBuffer.allocate(64 +
+            (exif != null ? exif.length : 0));
+
+        data.putShort((short)0xffd8);
+
+        if(exif != null) {
+            data.putShort((short)0xffe1).putShort((short)(exif.length + 2));
+            data.put(exif);
+        }
+
+        //baseline frame header with one component
+        data.putShort((short)0xffc0).putShort((short)11).put((byte)8);
+        data.putShort((short)height).putShort((short)width);
+        data.put(new byte[] {1, 1, 0x11, 0});
+        data.putShort((short)0xffda);
+
+        return write(Arrays.copyOf(data.array(), data.position()));
+    }
+
+    /**
+     * Writes a file into the temporary folder.
+     * @param data the contents of the file
+     * @return the path of the file
+     */
+    private String write(byte[] data) throws IOException {
+        File file = folder.newFile();
+        FileOutputStream out = new FileOutputStream(file);
+
+        try {
+            out.write(data);
+        }
+
+        finally {
+            out.close();
+        }
+
+        return file.getPath();
+    }
+
+    @Test
+    public void readsBigEndianPreview() throws IOException {
+        PImage thumb = ExifThumbnailReader.read(write(exif(jpeg(160, 120),
+            ByteOrder.BIG_ENDIAN), 4000, 3000));
+
+        assertNotNull(thumb);
+        assertEquals(160, thumb.width);
+        assertEquals(120, thumb.height);
+    }
+
+    @Test
+    public void readsLittleEndianPreview() throws IOException {
+        PImage thumb = ExifThumbnailReader.read(write(exif(jpeg(120, 160),
+            ByteOrder.LITTLE_ENDIAN), 3000, 4000));
+
+        assertNotNull(thumb);
+        assertEquals(120, thumb.width);
+        assertEquals(160, thumb.height);
+    }
+
+    @Test
+    public void rejectsLetterboxedPreview() throws IOException {
+        assertNull(ExifThumbnailReader.read(write(exif(jpeg(160, 120),
+            ByteOrder.BIG_ENDIAN), 1920, 1080)));
+    }
+
+    @Test
+    public void rejectsFilesWithoutPreview() throws IOException {
+        assertNull(ExifThumbnailReader.read(write(null, 4000, 3000)));
+        assertNull(ExifThumbnailReader.read(write(exif(null,
+            ByteOrder.BIG_ENDIAN), 4000, 3000)));
+    }
+
+    @Test
+    public void rejectsInvalidFiles() throws IOException {
+        byte[] data = Files.readAllBytes(new File(write(exif(jpeg(160, 120),
+            ByteOrder.BIG_ENDIAN), 4000, 3000)).toPath());
+
+        assertNull(ExifThumbnailReader.read(write(new byte[0])));
+        assertNull(ExifThumbnailReader.read(write(new byte[] {
+            (byte)0x89, 'P', 'N', 'G', '\r', '\n', 0x1a, '\n'
+        })));
+
+        //cut off inside the APP1 segment
+        assertNull(ExifThumbnailReader.read(write(Arrays.copyOf(data,
+            100))));
+
+        assertNull(ExifThumbnailReader.read(new File(folder.getRoot(),
+            "missing.jpg").getPath()));
+    }
+}
@@ -0,0 +1,275 @@
+/**
+ * @file MediaCatalogTest.java
+ * @description Tests the recording, restoring, recovery and compaction of
+ *   the MediaCatalog.
+ */
+
+package quickshow;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import quickshow.datatypes.AudioItem;
+import quickshow.datatypes.MediaItem;
+import quickshow.datatypes.WaveformSummary;
+
+public class MediaCatalogTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File dir, dataFile, indexFile;
+
+    @Before
+    public void setUp() throws IOException {
+        dir = folder.newFolder("catalog");
+        dataFile = new File(dir, "catalog.dat");
+        indexFile = new File(dir, "catalog.idx");
+    }
+
+    /**
+     * Writes a media file into the temporary folder, replacing its contents
+     *   and modification time if it exists.
+     * @param name the name of the file
+     * @param size the size of the file
+     * @return the file
+     */
+    private File media(String name, int size) throws IOException {
+        File file = new File(folder.getRoot(), name);
+        FileOutputStream out = new FileOutputStream(file);
+
+        try {
+            out.write(new byte[size]);
+        }
+
+        finally {
+            out.close();
+        }
+
+        //file systems with coarse timestamps must still see a change
+        file.setLastModified(1000000000000L + size * 1000L);
+
+        return file;
+    }
+
+    /**
+     * Constructs an AudioItem without reading its file.
+     * @param file the audio file
+     * @param numLevels the number of waveform levels
+     * @return an AudioItem object
+     */
+    private static AudioItem song(File file, int numLevels) {
+        return new AudioItem(null, file.getPath(), file.getName(), "author",
+            61, new WaveformSummary(new float[numLevels]));
+    }
+
+    /**
+     * Opens the catalog and restores it.
+     * @param restored the list receiving the restored MediaItems
+     * @return the MediaCatalog
+     */
+    private MediaCatalog open(ArrayList<MediaItem> restored) {
+        MediaCatalog catalog = new MediaCatalog(dir, false);
+
+        restored.addAll(catalog.restore(null, null));
+
+        return catalog;
+    }
+
+    @Test
+    public void restoresItemsInRecordedOrder() throws IOException {
+        ArrayList<MediaItem> restored = new ArrayList<MediaItem>();
+        MediaCatalog catalog = open(restored);
+
+        File[] files = {media("b.mp3", 10), media("a.mp3", 20),
+            media("c.mp3", 30)};
+
+        for(File file : files) {
+            catalog.append(song(file, 4));
+        }
+
+        catalog.close();
+
+        open(restored).close();
+
+        assertEquals(files.length, restored.size());
+
+        for(int i = 0; i < files.length; i++) {
+            AudioItem item = (AudioItem)restored.get(i);
+
+            assertEquals(files[i].getCanonicalPath(), item.getFileName());
+            assertEquals(files[i].getName(), item.getTitle());
+            assertEquals(61, item.getLength());
+            assertEquals(4, item.getWaveform().getLevels().length);
+        }
+    }
+
+    @Test
+    public void unchangedItemsAreRecordedOnce() throws IOException {
+        MediaCatalog catalog = open(new ArrayList<MediaItem>());
+        File file = media("a.mp3", 10);
+
+        catalog.append(song(file, 4));
+        long length = dataFile.length();
+
+        catalog.append(song(file, 4));
+        catalog.close();
+
+        assertEquals(length, dataFile.length());
+        assertEquals(1, catalog.size());
+    }
+
+    @Test
+    public void dropsItemsOfChangedAndMissingFiles() throws IOException {
+        MediaCatalog catalog = open(new ArrayList<MediaItem>());
+        File kept = media("a.mp3", 10), changed = media("b.mp3", 10),
+            deleted = media("c.mp3", 10);
+
+        catalog.append(song(kept, 4));
+        catalog.append(song(changed, 4));
+        catalog.append(song(deleted, 4));
+        catalog.close();
+
+        media("b.mp3", 11);
+        assertTrue(deleted.delete());
+
+        ArrayList<MediaItem> restored = new ArrayList<MediaItem>();
+        open(restored).close();
+
+        assertEquals(1, restored.size());
+        assertEquals(kept.getCanonicalPath(), restored.get(0).getFileName());
+    }
+
+    @Test
+    public void discardsPartiallyWrittenRecord() throws IOException {
+        MediaCatalog catalog = open(new ArrayList<MediaItem>());
+
+        catalog.append(song(media("a.mp3", 10), 4));
+        catalog.append(song(media("b.mp3", 10), 4));
+        catalog.close();
+
+        long length = dataFile.length();
+
+        //a record cut short by an interrupted write
+        DataOutputStream out = new DataOutputStream(new FileOutputStream(
+            dataFile, true));
+        out.writeInt(100);
+        out.write(new byte[10]);
+        out.close();
+
+        ArrayList<MediaItem> restored = new ArrayList<MediaItem>();
+        catalog = open(restored);
+
+        assertEquals(2, restored.size());
+        assertEquals(length, dataFile.length());
+
+        //records appended after recovery are readable
+        catalog.append(song(media("c.mp3", 10), 4));
+        catalog.close();
+
+        restored.clear();
+        open(restored).close();
+
+        assertEquals(3, restored.size());
+    }
+
+    @Test
+    public void rebuildsMissingIndex() throws IOException {
+        MediaCatalog catalog = open(new ArrayList<MediaItem>());
+        File file = media("a.mp3", 10);
+
+        catalog.append(song(file, 4));
+        catalog.append(song(media("b.mp3", 10), 4));
+        media("a.mp3", 20);
+        catalog.append(song(file, 8));
+        catalog.close();
+
+        assertTrue(indexFile.delete());
+
+        ArrayList<MediaItem> restored = new ArrayList<MediaItem>();
+        open(restored).close();
+
+        //the last record of a path describes it
+        assertEquals(2, restored.size());
+        assertEquals(file.getCanonicalPath(), restored.get(0).getFileName());
+        assertEquals(8, ((AudioItem)restored.get(0)).getWaveform()
+            .getLevels().length);
+    }
+
+    @Test
+    public void compactsLargeSupersededRecords() throws IOException {
+        supersede(WaveformSummary.MAX_LEVELS, 0, false);
+    }
+
+    @Test
+    public void compactsLargeSupersededRecordsWithoutIndex()
+        throws IOException
+    {
+        supersede(WaveformSummary.MAX_LEVELS, 0, true);
+    }
+
+    @Test
+    public void keepsSmallSupersededRecords() throws IOException {
+        supersede(0, WaveformSummary.MAX_LEVELS, false);
+    }
+
+    @Test
+    public void keepsSmallSupersededRecordsWithoutIndex() throws IOException {
+        supersede(0, WaveformSummary.MAX_LEVELS, true);
+    }
+
+    /**
+     * Records a file twice with differently sized records, then restores
+     *   the catalog. Only the first record is dead, so the data file is
+     *   compacted only if the first record is the larger one.
+     * @param oldLevels the waveform levels of the first record
+     * @param newLevels the waveform levels of the second record
+     * @param dropIndex whether the index is deleted before restoring
+     */
+    private void supersede(int oldLevels, int newLevels, boolean dropIndex)
+        throws IOException
+    {
+        MediaCatalog catalog = open(new ArrayList<MediaItem>());
+        File file = media("a.mp3", 10);
+
+        catalog.append(song(file, oldLevels));
+        long oldEnd = dataFile.length();
+
+        media("a.mp3", 20);
+        catalog.append(song(file, newLevels));
+        catalog.close();
+
+        long length = dataFile.length();
+        long newRecord = length - oldEnd;
+
+        if(dropIndex) {
+            assertTrue(indexFile.delete());
+        }
+
+        ArrayList<MediaItem> restored = new ArrayList<MediaItem>();
+        open(restored).close();
+
+        assertEquals(1, restored.size());
+        assertEquals(newLevels, ((AudioItem)restored.get(0)).getWaveform()
+            .getLevels().length);
+
+        if(oldLevels > newLevels) {
+            //header and the live record only
+            assertEquals(8 + newRecord, dataFile.length());
+        }
+
+        else {
+            assertEquals(length, dataFile.length());
+        }
+    }
+}
@@ -0,0 +1,119 @@
+/**
+ * @file PlaybackClockTest.java
+ * @description Tests the pausing, segment and frame accounting of
+ *   PlaybackClock.
+ */
+
+package quickshow;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class PlaybackClockTest {
+    /**
+     * Sleeps without being interrupted early.
+     * @param millis the time to sleep in milliseconds
+     */
+    private static void sleep(long millis) {
+        long end = System.nanoTime() + millis * 1000000L;
+        long left;
+
+        while((left = end - System.nanoTime()) > 0) {
+            try {
+                Thread.sleep(Math.max(1, left / 1000000L));
+            }
+
+            catch(InterruptedException e) {}
+        }
+    }
+
+    @Test
+    public void startsPausedAtZero() {
+        PlaybackClock clock = new PlaybackClock(30f);
+
+        sleep(20);
+
+        assertFalse(clock.isRunning());
+        assertEquals(0f, clock.elapsed(), 0f);
+    }
+
+    @Test
+    public void pauseKeepsElapsedTime() {
+        PlaybackClock clock = new PlaybackClock(30f);
+
+        clock.start();
+        sleep(50);
+        clock.pause();
+
+        float paused = clock.elapsed();
+
+        assertFalse(clock.isRunning());
+        assertTrue(paused >= 0.05f);
+
+        sleep(200);
+        assertEquals(paused, clock.elapsed(), 0f);
+
+        //time spent paused is not counted once running again
+        clock.resume();
+        assertTrue(clock.isRunning());
+        assertTrue(clock.elapsed() < paused + 0.1f);
+    }
+
+    @Test
+    public void advanceCarriesOverLateTime() {
+        PlaybackClock clock = new PlaybackClock(30f);
+
+        clock.start();
+        sleep(60);
+        clock.pause();
+
+        float elapsed = clock.elapsed();
+
+        clock.advance(0.05f);
+        assertEquals(elapsed - 0.05f, clock.elapsed(), 1e-3f);
+
+        clock.start();
+        clock.pause();
+        assertTrue(clock.elapsed() < 0.01f);
+    }
+
+    @Test
+    public void countsDroppedFrames() {
+        PlaybackClock clock = new PlaybackClock(100f);
+
+        clock.start();
+        clock.tick(100f);
+
+        //about five frame periods between two drawn frames
+        sleep(50);
+        clock.tick(100f);
+
+        assertEquals(1, clock.getFrames());
+        assertTrue(clock.getDroppedFrames() >= 4);
+        assertTrue(clock.getDrift() >= 0.04);
+    }
+
+    @Test
+    public void ignoresTicksWhilePaused() {
+        PlaybackClock clock = new PlaybackClock(100f);
+
+        clock.tick(100f);
+        sleep(20);
+        clock.tick(100f);
+
+        assertEquals(0, clock.getFrames());
+
+        //the first tick after resuming has no previous frame to measure
+        clock.start();
+        clock.pause();
+        sleep(50);
+        clock.resume();
+        clock.tick(100f);
+
+        assertEquals(0, clock.getFrames());
+        assertEquals(0, clock.getDroppedFrames());
+    }
+}
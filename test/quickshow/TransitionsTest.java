@@ -0,0 +1,233 @@
+/**
+ * @file TransitionsTest.java
+ * @description Tests the easing tables and the blend math of the slide show
+ *   transitions.
+ */
+
+package quickshow;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+public class TransitionsTest {
+    private static final int WIDTH = 40, HEIGHT = 30;
+
+    private static final int FROM = 0xff000000, TO = 0xffffffff;
+
+    /**
+     * Creates the transitions under test.
+     * @return an array of Transitions
+     */
+    private static TransitionCompositor.Transition[] transitions() {
+        return new TransitionCompositor.Transition[] {
+            new Transitions.Fade(),
+            new Transitions.Slide(),
+            new Transitions.Wipe(),
+            new Transitions.Zoom(),
+            new Transitions.Dissolve()
+        };
+    }
+
+    /**
+     * Creates a frame filled with one color.
+     * @param color the opaque color
+     * @return the pixels of the frame
+     */
+    private static int[] fill(int color) {
+        int[] pixels = new int[WIDTH * HEIGHT];
+        Arrays.fill(pixels, color);
+
+        return pixels;
+    }
+
+    /**
+     * Creates a frame whose pixels are all different.
+     * @param seed the value of the first pixel
+     * @return the pixels of the frame
+     */
+    private static int[] pattern(int seed) {
+        int[] pixels = new int[WIDTH * HEIGHT];
+
+        for(int i = 0; i < pixels.length; i++) {
+            pixels[i] = 0xff000000 | (seed + i * 0x9e3779) & 0xffffff;
+        }
+
+        return pixels;
+    }
+
+    /**
+     * Blends a whole frame in one range of rows.
+     * @param transition the Transition
+     * @param from the outgoing frame
+     * @param to the incoming frame
+     * @param weight the eased progress, from 0 to 256
+     * @return the pixels of the output frame
+     */
+    private static int[] blend(TransitionCompositor.Transition transition,
+        int[] from, int[] to, int weight)
+    {
+        int[] out = new int[WIDTH * HEIGHT];
+
+        transition.prepare(WIDTH, HEIGHT);
+        transition.blend(from, to, out, WIDTH, HEIGHT, weight, 0, HEIGHT);
+
+        return out;
+    }
+
+    @Test
+    public void easingTablesRunFromZeroTo256() {
+        int[][] tables = {Transitions.LINEAR, Transitions.EASE_IN_OUT,
+            Transitions.EASE_OUT};
+
+        for(int[] table : tables) {
+            assertEquals(Transitions.EASING_STEPS + 1, table.length);
+            assertEquals(0, table[0]);
+            assertEquals(256, table[table.length - 1]);
+
+            for(int i = 1; i < table.length; i++) {
+                assertTrue(table[i] >= table[i - 1]);
+            }
+        }
+
+        assertEquals(128, Transitions.LINEAR[Transitions.EASING_STEPS / 2]);
+        assertEquals(128,
+            Transitions.EASE_IN_OUT[Transitions.EASING_STEPS / 2]);
+    }
+
+    @Test
+    public void transitionsStartAndEndOnTheSlides() {
+        int[] from = pattern(1), to = pattern(7);
+
+        for(TransitionCompositor.Transition transition : transitions()) {
+            String name = transition.getClass().getSimpleName();
+
+            assertArrayEquals(name, from, blend(transition, from, to, 0));
+            assertArrayEquals(name, to, blend(transition, from, to, 256));
+        }
+    }
+
+    @Test
+    public void bandsBlendLikeWholeFrames() {
+        int[] from = pattern(3), to = pattern(11);
+        int[] bands = {0, 7, 8, 19, HEIGHT};
+
+        for(TransitionCompositor.Transition transition : transitions()) {
+            for(int weight = 0; weight <= 256; weight += 37) {
+                int[] whole = blend(transition, from, to, weight);
+                int[] out = new int[WIDTH * HEIGHT];
+
+                for(int i = 0; i + 1 < bands.length; i++) {
+                    transition.blend(from, to, out, WIDTH, HEIGHT, weight,
+                        bands[i], bands[i + 1]);
+                }
+
+                assertArrayEquals(transition.getClass().getSimpleName(),
+                    whole, out);
+            }
+        }
+    }
+
+    @Test
+    public void fadeMixesChannelsByWeight() {
+        int[] out = blend(new Transitions.Fade(), fill(FROM), fill(TO), 128);
+
+        for(int pixel : out) {
+            assertEquals(0xff7f7f7f, pixel);
+        }
+
+        out = blend(new Transitions.Fade(), fill(0xff204060),
+            fill(0xff6040a0), 64);
+
+        //three quarters of the outgoing color, one quarter of the incoming
+        assertEquals(0xff304070, out[0]);
+    }
+
+    @Test
+    public void wipeUncoversFromTheLeft() {
+        int[] out = blend(new Transitions.Wipe(), fill(FROM), fill(TO), 128);
+
+        for(int y = 0; y < HEIGHT; y++) {
+            for(int x = 0; x < WIDTH; x++) {
+                assertEquals((x < WIDTH / 2 ? TO : FROM), out[y * WIDTH + x]);
+            }
+        }
+    }
+
+    @Test
+    public void slideMovesTheOutgoingSlide() {
+        Transitions.Slide slide = new Transitions.Slide();
+        int[] from = pattern(5);
+
+        //one third of the way, the slide has moved half the window
+        slide.setDirection(1, 0);
+        int[] out = blend(slide, from, fill(TO), 256 / 3 + 1);
+        int dx = (256 / 3 + 1) * 3 * WIDTH / 512;
+
+        for(int y = 0; y < HEIGHT; y++) {
+            for(int x = 0; x < WIDTH; x++) {
+                assertEquals((x < dx ? TO : from[y * WIDTH + x - dx]),
+                    out[y * WIDTH + x]);
+            }
+        }
+
+        slide.setDirection(0, -1);
+        out = blend(slide, from, fill(TO), 256 / 3 + 1);
+        int dy = (256 / 3 + 1) * 3 * HEIGHT / 512;
+
+        for(int y = 0; y < HEIGHT; y++) {
+            for(int x = 0; x < WIDTH; x++) {
+                assertEquals((y >= HEIGHT - dy ? TO :
+                    from[(y + dy) * WIDTH + x]), out[y * WIDTH + x]);
+            }
+        }
+    }
+
+    @Test
+    public void zoomGrowsFromTheCenter() {
+        int[] out = blend(new Transitions.Zoom(), fill(FROM), fill(TO), 128);
+        int w = WIDTH / 2, h = HEIGHT / 2;
+        int left = (WIDTH - w) / 2, top = (HEIGHT - h) / 2;
+
+        for(int y = 0; y < HEIGHT; y++) {
+            for(int x = 0; x < WIDTH; x++) {
+                boolean inside = x >= left && x < left + w && y >= top &&
+                    y < top + h;
+
+                assertEquals((inside ? TO : FROM), out[y * WIDTH + x]);
+            }
+        }
+    }
+
+    @Test
+    public void dissolveSwitchesPixelsOnce() {
+        Transitions.Dissolve dissolve = new Transitions.Dissolve();
+        int[] previous = fill(FROM);
+        int count, lastCount = 0;
+
+        for(int weight = 0; weight <= 256; weight += 16) {
+            int[] out = blend(dissolve, fill(FROM), fill(TO), weight);
+            count = 0;
+
+            for(int i = 0; i < out.length; i++) {
+                //switched pixels never switch back
+                if(previous[i] == TO) {
+                    assertEquals(TO, out[i]);
+                }
+
+                if(out[i] == TO) {
+                    count++;
+                }
+            }
+
+            assertTrue(count >= lastCount);
+
+            lastCount = count;
+            previous = out;
+        }
+    }
+}
@@ -0,0 +1,193 @@
+/**
+ * @file VideoHeaderReaderTest.java
+ * @description Tests the properties read from generated video file headers.
+ */
+
+package quickshow;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class VideoHeaderReaderTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static final Charset LATIN_1 = Charset.forName("ISO-8859-1");
+
+    /**
+     * Writes the used part of a buffer into the temporary folder.
+     * @param buf the buffer
+     * @return the path of the file
+     */
+    private String write(ByteBuffer buf) throws IOException {
+        File file = folder.newFile();
+        FileOutputStream out = new FileOutputStream(file);
+
+        try {
+            out.write(Arrays.copyOf(buf.array(), buf.position()));
+        }
+
+        finally {
+            out.close();
+        }
+
+        return file.getPath();
+    }
+
+    /**
+     * Puts an ASCII string into a buffer.
+     * @param buf the buffer
+     * @param text the string
+     * @return the buffer
+     */
+    private static ByteBuffer put(ByteBuffer buf, String text) {
+        return buf.put(text.getBytes(LATIN_1));
+    }
+
+    /**
+     * Starts a box, leaving its size to be filled in by end().
+     * @param buf the buffer
+     * @param type the box type
+     * @return the position of the box
+     */
+    private static int begin(ByteBuffer buf, String type) {
+        int pos = buf.position();
+
+        put(buf.putInt(0), type);
+
+        return pos;
+    }
+
+    /**
+     * Ends a box started by begin().
+     * @param buf the buffer
+     * @param pos the position of the box
+     */
+    private static void end(ByteBuffer buf, int pos) {
+        buf.putInt(pos, buf.position() - pos);
+    }
+
+    /**
+     * Puts a track header box.
+     * @param buf the buffer
+     * @param width the track width
+     * @param height the track height
+     */
+    private static void track(ByteBuffer buf, int width, int height) {
+        int trak = begin(buf, "trak");
+        int tkhd = begin(buf, "tkhd");
+
+        //version 0, then times, track ID, layer, volume and matrix
+        buf.putInt(0).position(buf.position() + 20 + 52);
+        buf.putInt(width << 16).putInt(height << 16);
+
+        end(buf, tkhd);
+        end(buf, trak);
+    }
+
+    @Test
+    public void readsMp4MovieAndVisualTrack() throws IOException {
+        ByteBuffer mp4 = ByteBuffer.allocate(1024);
+
+        int ftyp = begin(mp4, "ftyp");
+        put(mp4, "isom").putInt(0);
+        end(mp4, ftyp);
+
+        int moov = begin(mp4, "moov");
+        int mvhd = begin(mp4, "mvhd");
+
+        //version 0, creation and modification times, time scale, duration
+        mp4.putInt(0).putLong(0).putInt(600).putInt(4500);
+        end(mp4, mvhd);
+
+        //the audio track comes first and has no dimensions
+        track(mp4, 0, 0);
+        track(mp4, 640, 360);
+        track(mp4, 320, 240);
+        end(mp4, moov);
+
+        VideoHeaderReader.Header header = VideoHeaderReader.read(write(mp4));
+
+        assertEquals(640, header.width);
+        assertEquals(360, header.height);
+        assertEquals(7.5f, header.duration, 1e-6f);
+    }
+
+    @Test
+    public void readsLongMovieHeader() throws IOException {
+        ByteBuffer mov = ByteBuffer.allocate(1024);
+
+        //QuickTime files may begin with the movie data
+        int mdat = begin(mov, "mdat");
+        mov.putLong(0);
+        end(mov, mdat);
+
+        int moov = begin(mov, "moov");
+        int mvhd = begin(mov, "mvhd");
+
+        //version 1, 64-bit times and duration
+        mov.putInt(1 << 24).putLong(0).putLong(0).putInt(1000);
+        mov.putLong(1L << 32);
+        end(mov, mvhd);
+        end(mov, moov);
+
+        assertEquals((1L << 32) / 1000f, VideoHeaderReader.read(
+            write(mov)).duration, 1f);
+    }
+
+    @Test
+    public void readsAviMainHeader() throws IOException {
+        ByteBuffer avi = ByteBuffer.allocate(256)
+            .order(ByteOrder.LITTLE_ENDIAN);
+
+        put(avi, "RIFF").putInt(0);
+        put(avi, "AVI ");
+        put(avi, "LIST").putInt(0);
+        put(avi, "hdrl");
+        put(avi, "avih").putInt(56);
+
+        //25 frames per second, 250 frames
+        avi.putInt(40000).putInt(0).putInt(0).putInt(0).putInt(250);
+        avi.putInt(0).putInt(1).putInt(0);
+        avi.putInt(720).putInt(576);
+        avi.position(avi.position() + 16);
+
+        VideoHeaderReader.Header header = VideoHeaderReader.read(write(avi));
+
+        assertEquals(720, header.width);
+        assertEquals(576, header.height);
+        assertEquals(10f, header.duration, 1e-6f);
+    }
+
+    @Test
+    public void leavesUnknownFilesEmpty() throws IOException {
+        ByteBuffer text = put(ByteBuffer.allocate(64),
+            "not a video file, only some text");
+
+        //a box running past the end of the file
+        ByteBuffer truncated = ByteBuffer.allocate(64);
+        put(truncated.putInt(1000), "moov");
+        put(truncated.putInt(100), "mvhd");
+
+        for(String path : new String[] {write(text), write(truncated),
+            new File(folder.getRoot(), "missing.mp4").getPath()})
+        {
+            VideoHeaderReader.Header header = VideoHeaderReader.read(path);
+
+            assertEquals(0, header.width);
+            assertEquals(0, header.height);
+            assertEquals(0f, header.duration, 0f);
+        }
+    }
+}
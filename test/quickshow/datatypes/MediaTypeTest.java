@@ -0,0 +1,120 @@
+/**
+ * @file MediaTypeTest.java
+ * @description Tests the extension lookup and header sniffing of MediaType.
+ */
+
+package quickshow.datatypes;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class MediaTypeTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static final byte[] PNG = {
+        (byte)0x89, 'P', 'N', 'G', '\r', '\n', 0x1a, '\n', 0, 0, 0, 13
+    };
+
+    private static final byte[] JPEG = {
+        (byte)0xff, (byte)0xd8, (byte)0xff, (byte)0xe0, 0, 16,
+        'J', 'F', 'I', 'F', 0, 1
+    };
+
+    private static final byte[] MP4 = {
+        0, 0, 0, 24, 'f', 't', 'y', 'p', 'i', 's', 'o', 'm'
+    };
+
+    private static final byte[] WAV = {
+        'R', 'I', 'F', 'F', 36, 0, 0, 0, 'W', 'A', 'V', 'E'
+    };
+
+    private static final byte[] TEXT = {
+        'B', 'M', ' ', 'i', 's', ' ', 'n', 'o', 't', ' ', 'a', 'n'
+    };
+
+    /**
+     * Writes a file into the temporary folder.
+     * @param name the name of the file
+     * @param data the contents of the file
+     * @return the path of the file
+     */
+    private String write(String name, byte[] data) throws IOException {
+        File file = folder.newFile(name);
+        FileOutputStream out = new FileOutputStream(file);
+
+        try {
+            out.write(data);
+        }
+
+        finally {
+            out.close();
+        }
+
+        return file.getPath();
+    }
+
+    @Test
+    public void forExtensionIgnoresCase() {
+        assertEquals(MediaType.IMAGE, MediaType.forExtension("a/b.JPG"));
+        assertEquals(MediaType.AUDIO, MediaType.forExtension("b.Mp3"));
+        assertEquals(MediaType.VIDEO, MediaType.forExtension("c.mov"));
+        assertNull(MediaType.forExtension("notes.txt"));
+        assertNull(MediaType.forExtension("README"));
+    }
+
+    @Test
+    public void sniffRecognizesSignatures() throws IOException {
+        assertEquals(MediaType.IMAGE, MediaType.sniff(write("a", PNG)));
+        assertEquals(MediaType.IMAGE, MediaType.sniff(write("b", JPEG)));
+        assertEquals(MediaType.VIDEO, MediaType.sniff(write("c", MP4)));
+        assertEquals(MediaType.AUDIO, MediaType.sniff(write("d", WAV)));
+        assertNull(MediaType.sniff(write("e", TEXT)));
+    }
+
+    @Test
+    public void sniffRejectsShortAndMissingFiles() throws IOException {
+        assertNull(MediaType.sniff(write("short", new byte[] {
+            (byte)0xff, (byte)0xd8
+        })));
+        assertNull(MediaType.sniff(new File(folder.getRoot(), "missing")
+            .getPath()));
+    }
+
+    @Test
+    public void classifyPrefersExtensionToHeader() throws IOException {
+        assertEquals(MediaType.IMAGE,
+            MediaType.classify(write("clip.jpg", MP4)));
+        assertEquals(MediaType.AUDIO,
+            MediaType.classify(write("cover.wav", PNG)));
+
+        //registered extensions are classified without reading the file
+        assertEquals(MediaType.VIDEO, MediaType.classify(
+            new File(folder.getRoot(), "missing.mov").getPath()));
+    }
+
+    @Test
+    public void classifySniffsUnregisteredExtensions() throws IOException {
+        assertEquals(MediaType.IMAGE, MediaType.classify(write("photo", JPEG)));
+        assertEquals(MediaType.IMAGE,
+            MediaType.classify(write("photo.jpeg", JPEG)));
+        assertEquals(MediaType.AUDIO,
+            MediaType.classify(write("take.tmp", WAV)));
+        assertNull(MediaType.classify(write("notes.txt", TEXT)));
+    }
+
+    @Test
+    public void classifyFallsBackToExtension() throws IOException {
+        assertEquals(MediaType.AUDIO, MediaType.classify(write("song.mp3",
+            new byte[12])));
+        assertNull(MediaType.classify(write("blank.txt", new byte[12])));
+    }
+}
@@ -0,0 +1,120 @@
+/**
+ * @file ThumbnailBenchmark.java
+ * @description Compares full decoding against subsampled decoding for the
+ *   FileBrowser thumbnails of one directory page. Not part of the
+ *   application; compile it against the Quickshow classes and run it with
+ *   a directory of sample images.
+ */
+
+package quickshow;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+
+import javax.imageio.ImageIO;
+
+import processing.core.PImage;
+import quickshow.datatypes.MediaType;
+
+public class ThumbnailBenchmark {
+    private static final int PAGE_SIZE = 20;
+    private static final int THUMB_SIZE = 136;
+
+    /**
+     * Main method. Usage: ThumbnailBenchmark directory [runs]
+     * @param args command line arguments
+     */
+    public static void main(String[] args) {
+        if(args.length < 1) {
+            System.err.println("usage: ThumbnailBenchmark directory [runs]");
+            return;
+        }
+
+        int runs = (args.length > 1 ? Integer.parseInt(args[1]) : 3);
+
+        ArrayList<String> page = new ArrayList<String>();
+        File[] files = new File(args[0]).listFiles();
+
+        if(files != null) {
+            for(File file : files) {
+                if(page.size() < PAGE_SIZE && file.isFile() &&
+                    MediaType.classify(file.getPath()) == MediaType.IMAGE)
+                {
+                    page.add(file.getAbsolutePath());
+                }
+            }
+        }
+
+        if(page.isEmpty()) {
+            System.err.println("no images found in " + args[0]);
+            return;
+        }
+
+        long full, subsampled;
+
+        //warm up both paths
+        fullPage(page);
+        subsampledPage(page);
+
+        for(int i = 0; i < runs; i++) {
+            full = fullPage(page);
+            subsampled = subsampledPage(page);
+
+            System.out.println(String.format(
+                "page of %d: full %.1f ms, subsampled %.1f ms, speedup %.2fx",
+                page.size(), full / 1e6, subsampled / 1e6,
+                1.0 * full / subsampled));
+        }
+    }
+
+    /**
+     * Times the original thumbnail path: full decode, then resize.
+     * @param page the image paths to decode
+     * @return the elapsed time in nanoseconds
+     */
+    private static long fullPage(ArrayList<String> page) {
+        long start = System.nanoTime();
+        BufferedImage image;
+        PImage thumb;
+
+        for(String path : page) {
+            try {
+                image = ImageIO.read(new File(path));
+            }
+
+            catch(IOException e) {
+                image = null;
+            }
+
+            if(image != null) {
+                thumb = ImageDecoder.toPImage(image);
+                thumb.resize(THUMB_SIZE, 0);
+            }
+        }
+
+        return System.nanoTime() - start;
+    }
+
+    /**
+     * Times the subsampled thumbnail path.
+     * @param page the image paths to decode
+     * @return the elapsed time in nanoseconds
+     */
+    private static long subsampledPage(ArrayList<String> page) {
+        long start = System.nanoTime();
+        PImage thumb;
+
+        for(String path : page) {
+            thumb = ImageDecoder.decodeSubsampled(path, THUMB_SIZE,
+                THUMB_SIZE);
+
+            if(thumb != null) {
+                thumb.resize(THUMB_SIZE, 0);
+            }
+        }
+
+        return System.nanoTime() - start;
+    }
+}